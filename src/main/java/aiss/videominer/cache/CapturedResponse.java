@@ -0,0 +1,23 @@
+package aiss.videominer.cache;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// A response copied by CopyingResponse, written again as it was to other clients
+public record CapturedResponse(int status, String contentType, Map<String, List<String>> headers, byte[] body) {
+
+    public void writeTo(HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        if (body.length > 0) {
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package aiss.videominer.cache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Applies the RequestCoalescer. The first of identical requests is written to its client as it is read and copied on
+ * the way; the ones that arrived meanwhile get the copy. Requests are identical with the same path, query parameters,
+ * Accept header and conditional headers, so a shared 304 answers the same validators.
+ */
+public class CoalescingFilter extends OncePerRequestFilter {
+
+    private final RequestCoalescer requestCoalescer;
+
+    public CoalescingFilter(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !requestCoalescer.isEnabled() || !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String endpoint = requestCoalescer.endpoint(path);
+        if (endpoint == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String key = ResponseCache.request(path, request.getParameterMap(), request.getHeader(HttpHeaders.ACCEPT),
+                request.getHeader(HttpHeaders.IF_NONE_MATCH), request.getHeader(HttpHeaders.IF_MODIFIED_SINCE));
+        CompletableFuture<CapturedResponse> flight = new CompletableFuture<>();
+        CompletableFuture<CapturedResponse> leader = requestCoalescer.join(key, flight);
+        if (leader != null) {
+            CapturedResponse shared = requestCoalescer.await(leader);
+            if (shared != null) {
+                requestCoalescer.record(endpoint, RequestCoalescer.Result.FOLLOWER);
+                shared.writeTo(response);
+                return;
+            }
+            requestCoalescer.record(endpoint, RequestCoalescer.Result.FALLBACK);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        requestCoalescer.record(endpoint, RequestCoalescer.Result.LEADER);
+        CapturedResponse captured = null;
+        try {
+            CopyingResponse copying = new CopyingResponse(response, requestCoalescer.getMaxSize());
+            filterChain.doFilter(request, copying);
+            captured = copying.capture();
+            if (captured != null && captured.status() != HttpServletResponse.SC_OK && captured.status() != HttpServletResponse.SC_NOT_MODIFIED) {
+                captured = null;
+            }
+        } finally {
+            requestCoalescer.land(key, flight, captured);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package aiss.videominer.cache;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Passes the response through to the client while it is written, and copies its status, the headers set by the
+ * application and its body, up to a maximum size. The headers added by the server, such as Content-Encoding, are left
+ * out.
+ */
+class CopyingResponse extends HttpServletResponseWrapper {
+
+    private final Map<String, List<String>> headers = new LinkedCaseInsensitiveMap<>();
+
+    private final long maxSize;
+
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    private ServletOutputStream outputStream;
+
+    CopyingResponse(HttpServletResponse response, long maxSize) {
+        super(response);
+        this.maxSize = maxSize;
+    }
+
+    // Null once the body outgrew the maximum size or was written as text
+    CapturedResponse capture() {
+        if (copy == null) {
+            return null;
+        }
+        return new CapturedResponse(getStatus(), getContentType(), headers, copy.toByteArray());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        super.setHeader(name, value);
+        headers.put(name, new ArrayList<>(List.of(value)));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        super.addHeader(name, value);
+        headers.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, Integer.toString(value));
+    }
+
+    // Last-Modified is set as a date by the conditional GETs, it is copied formatted as the server writes it
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(name, date));
+    }
+
+    private static String formatDate(String name, long date) {
+        HttpHeaders formatted = new HttpHeaders();
+        formatted.setDate(name, date);
+        return formatted.getFirst(name);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CopyingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        copy = null;
+        return super.getWriter();
+    }
+
+    private class CopyingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        CopyingOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxSize) {
+                copy = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+}
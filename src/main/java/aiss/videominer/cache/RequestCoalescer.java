@@ -0,0 +1,111 @@
+package aiss.videominer.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Single flight of the GETs of a video and of its comments: while a request is read, the identical requests that arrive
+ * wait for it instead of reading the same rows, and are answered with a copy of its response. Only its 200 and 304
+ * responses are shared, the waiting requests go on by themselves after any other outcome or after the timeout.
+ */
+@Component
+public class RequestCoalescer {
+
+    private static final String API_PREFIX = "/videoMiner/v1/";
+
+    public enum Result { LEADER, FOLLOWER, FALLBACK }
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.coalescing.enabled:true}")
+    boolean enabled;
+
+    @Value("${videominer.coalescing.timeout:10s}")
+    Duration timeout;
+
+    @Value("${videominer.coalescing.max-size:16MB}")
+    DataSize maxSize;
+
+    private final Map<String, CompletableFuture<CapturedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private Map<String, Counter[]> counters;
+
+    @PostConstruct
+    void init() {
+        counters = Map.of("video", counters("video"), "video.comments", counters("video.comments"));
+    }
+
+    private Counter[] counters(String endpoint) {
+        Counter[] counters = new Counter[Result.values().length];
+        for (Result result : Result.values()) {
+            counters[result.ordinal()] = meterRegistry.counter("videominer.coalescing.requests", "endpoint", endpoint, "result", result.name().toLowerCase());
+        }
+        return counters;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize.toBytes();
+    }
+
+    // The endpoint of the path, null when its requests are not coalesced
+    public String endpoint(String path) {
+        if (!path.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String[] segments = path.substring(API_PREFIX.length()).split("/");
+        if (segments.length < 2 || !segments[0].equals("videos") || segments[1].equals("search")) {
+            return null;
+        }
+        if (segments.length == 2) {
+            return "video";
+        }
+        if (segments.length == 3 && segments[2].equals("comments")) {
+            return "video.comments";
+        }
+        return null;
+    }
+
+    // The response of the request in flight for the key, or null when this one becomes the request in flight
+    public CompletableFuture<CapturedResponse> join(String key, CompletableFuture<CapturedResponse> flight) {
+        return inFlight.putIfAbsent(key, flight);
+    }
+
+    public void land(String key, CompletableFuture<CapturedResponse> flight, CapturedResponse response) {
+        inFlight.remove(key, flight);
+        flight.complete(response);
+    }
+
+    // Null when the request in flight did not end with a response to share in time
+    public CapturedResponse await(CompletableFuture<CapturedResponse> flight) {
+        try {
+            return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    public void record(String endpoint, Result result) {
+        counters.get(endpoint)[result.ordinal()].increment();
+    }
+}
@@ -0,0 +1,193 @@
+package aiss.videominer.cache;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import aiss.videominer.model.Video;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bodies of the list endpoints, kept for identical GETs: same path, same query parameters in any order and same Accept
+ * header. The cache is bounded by the bytes of the bodies it holds.
+ *
+ * Every entity type has a generation, increased by ResponseCacheListener after the commit of each insert, update or
+ * delete of one of its rows, whatever the handler, the ingest job or the stream that made it. A key holds the sum of the
+ * generations of the types its response is built from, taken before the response is read, so a change of any of them
+ * makes the next requests miss, and a response read while a change was committed is never found again. The entries
+ * left behind are evicted with the least used ones.
+ */
+@Component
+public class ResponseCache {
+
+    private static final String API_PREFIX = "/videoMiner/v1/";
+
+    private static final List<Class<?>> CHANNELS = List.of(Channel.class, Video.class, Comment.class, User.class, Caption.class);
+
+    private static final List<Class<?>> VIDEOS = List.of(Video.class, Comment.class, User.class, Caption.class);
+
+    private static final List<Class<?>> COMMENTS = List.of(Comment.class, User.class);
+
+    private static final List<Class<?>> CAPTIONS = List.of(Caption.class);
+
+    private static final List<Class<?>> USERS = List.of(User.class);
+
+    // Lists of the API and the types their rows are built from
+    private static final Map<String, List<Class<?>>> LISTS = Map.of(
+            "channels", CHANNELS,
+            "videos", VIDEOS,
+            "comments", COMMENTS,
+            "captions", CAPTIONS,
+            "users", USERS);
+
+    // Lists of the rows of an owner, which answer 404 until the owner exists
+    private static final Map<String, List<Class<?>>> SUB_LISTS = Map.of(
+            "channels/videos", CHANNELS,
+            "videos/comments", List.of(Video.class, Comment.class, User.class),
+            "videos/captions", List.of(Video.class, Caption.class),
+            "videos/users", List.of(Video.class, Comment.class, User.class));
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.response-cache.enabled:true}")
+    boolean enabled;
+
+    @Value("${videominer.response-cache.max-size:64MB}")
+    DataSize maxSize;
+
+    @Value("${videominer.response-cache.max-entry-size:1MB}")
+    DataSize maxEntrySize;
+
+    @Value("${videominer.response-cache.ttl:60s}")
+    Duration ttl;
+
+    private Cache<Key, CapturedResponse> responses;
+
+    private final Map<Class<?>, AtomicLong> generations = Map.of(
+            Channel.class, new AtomicLong(),
+            Video.class, new AtomicLong(),
+            Comment.class, new AtomicLong(),
+            Caption.class, new AtomicLong(),
+            User.class, new AtomicLong());
+
+    private final Map<Class<?>, Counter> invalidations = new HashMap<>();
+
+    public record Key(String request, long generation) {}
+
+    @PostConstruct
+    void init() {
+        responses = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Key key, CapturedResponse response) -> key.request().length() + response.body().length)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "responses");
+        Gauge.builder("videominer.response-cache.bytes", responses, cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        for (Class<?> type : generations.keySet()) {
+            invalidations.put(type, meterRegistry.counter("videominer.response-cache.invalidations", "type", type.getSimpleName()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaxEntrySize() {
+        return maxEntrySize.toBytes();
+    }
+
+    public boolean tracks(Class<?> type) {
+        return generations.containsKey(type);
+    }
+
+    // Called once the change of a row of the type is committed
+    public void changed(Class<?> type) {
+        AtomicLong generation = generations.get(type);
+        if (generation != null) {
+            generation.incrementAndGet();
+            invalidations.get(type).increment();
+        }
+    }
+
+    // The key of a GET of the path, null when its response is not cached
+    public Key key(String path, Map<String, String[]> parameters, String accept) {
+        List<Class<?>> types = types(path);
+        if (types == null) {
+            return null;
+        }
+        long generation = 0;
+        for (Class<?> type : types) {
+            generation += generations.get(type).get();
+        }
+        return new Key(request(path, parameters, accept), generation);
+    }
+
+    // The path with the query parameters sorted by name, followed by the values of the headers the response varies on
+    static String request(String path, Map<String, String[]> parameters, String... headers) {
+        StringBuilder request = new StringBuilder(path);
+        char separator = '?';
+        for (Map.Entry<String, String[]> parameter : new TreeMap<>(parameters).entrySet()) {
+            for (String value : parameter.getValue()) {
+                request.append(separator).append(encode(parameter.getKey())).append('=').append(encode(value));
+                separator = '&';
+            }
+        }
+        for (String header : headers) {
+            request.append(' ').append(header == null ? "" : header);
+        }
+        return request.toString();
+    }
+
+    public CapturedResponse get(Key key) {
+        return responses.getIfPresent(key);
+    }
+
+    public void put(Key key, CapturedResponse response) {
+        responses.put(key, response);
+    }
+
+    /*
+     * The lists and the lists of an owner. Single resources answer conditional GETs from their own validators, the
+     * searches read the full-text index, which is updated apart from the database, and the exports are too big to keep.
+     */
+    private static List<Class<?>> types(String path) {
+        if (!path.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String[] segments = path.substring(API_PREFIX.length()).split("/");
+        if (segments.length == 1) {
+            return LISTS.get(segments[0]);
+        }
+        if (segments.length == 3) {
+            return SUB_LISTS.get(segments[0] + "/" + segments[2]);
+        }
+        return null;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
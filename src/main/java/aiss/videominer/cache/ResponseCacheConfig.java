@@ -0,0 +1,29 @@
+package aiss.videominer.cache;
+
+import aiss.videominer.security.SecurityConfig;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class ResponseCacheConfig {
+
+    // Runs after the AuthenticationFilter and the RateLimitFilter, a cached response still needs a valid token and uses a call
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(ResponseCache responseCache) {
+        FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(new ResponseCacheFilter(responseCache));
+        registration.addUrlPatterns(SecurityConfig.API_PATTERN);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 30);
+        return registration;
+    }
+
+    // Runs after the ResponseCacheFilter, only the requests it did not answer are coalesced
+    @Bean
+    public FilterRegistrationBean<CoalescingFilter> coalescingFilter(RequestCoalescer requestCoalescer) {
+        FilterRegistrationBean<CoalescingFilter> registration = new FilterRegistrationBean<>(new CoalescingFilter(requestCoalescer));
+        registration.addUrlPatterns(SecurityConfig.API_PATTERN);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 40);
+        return registration;
+    }
+}
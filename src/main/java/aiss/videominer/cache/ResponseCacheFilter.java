@@ -0,0 +1,51 @@
+package aiss.videominer.cache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/*
+ * Answers the GETs of the lists from the ResponseCache. On a miss the response is written to the client as it is
+ * read, streamed lists included, and copied on the way; the copy is kept when the response is a 200 that did not
+ * outgrow the maximum entry size.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private final ResponseCache responseCache;
+
+    public ResponseCacheFilter(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !responseCache.isEnabled() || !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        ResponseCache.Key key = responseCache.key(path, request.getParameterMap(), request.getHeader(HttpHeaders.ACCEPT));
+        if (key == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CapturedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            cached.writeTo(response);
+            return;
+        }
+        CopyingResponse copying = new CopyingResponse(response, responseCache.getMaxEntrySize());
+        filterChain.doFilter(request, copying);
+        CapturedResponse captured = copying.capture();
+        if (captured != null && captured.status() == HttpServletResponse.SC_OK) {
+            responseCache.put(key, captured);
+        }
+    }
+}
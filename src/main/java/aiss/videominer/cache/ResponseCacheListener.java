@@ -0,0 +1,75 @@
+package aiss.videominer.cache;
+
+import aiss.videominer.repository.LastModifiedListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Moves the ResponseCache to a new generation of the type of each row inserted, updated or deleted, cascades included,
+ * once its transaction is committed, so that the lists it holds are read again by the next requests.
+ */
+@Component
+public class ResponseCacheListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    @Autowired
+    ResponseCache responseCache;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        responseCache.changed(event.getPersister().getMappedClass());
+    }
+
+    // A touched parent is only listed in responses that are also built from the type of the child that changed
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!LastModifiedListener.onlyTouched(event)) {
+            responseCache.changed(event.getPersister().getMappedClass());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        responseCache.changed(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return responseCache.isEnabled() && responseCache.tracks(persister.getMappedClass());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+}
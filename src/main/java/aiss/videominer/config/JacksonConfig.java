@@ -0,0 +1,66 @@
+package aiss.videominer.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+@Configuration
+public class JacksonConfig {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    // Entities annotated with @JsonFilter are serialized whole unless the response sets its own filters
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer defaultFilters() {
+        return builder -> builder.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    /*
+     * Registered in every mapper of Spring, it replaces the reflective getters, setters and constructors of the
+     * serializers and deserializers with generated lambdas, which the JIT inlines like plain calls.
+     */
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // Picked up before the default converters, the list endpoints return their rows as a RowStream
+    @Bean
+    public RowStreamHttpMessageConverter rowStreamHttpMessageConverter(ObjectMapper objectMapper) {
+        return new RowStreamHttpMessageConverter(objectMapper, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    /*
+     * Binary bodies for the miners, chosen with the Content-Type and Accept headers of any endpoint. They replace the
+     * CBOR and Smile converters Spring adds on its own, whose mappers miss the modules and default filters of the
+     * JSON one.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public RowStreamHttpMessageConverter cborRowStreamHttpMessageConverter(MappingJackson2CborHttpMessageConverter cborHttpMessageConverter) {
+        return new RowStreamHttpMessageConverter(cborHttpMessageConverter.getObjectMapper(), MediaType.APPLICATION_CBOR);
+    }
+
+    @Bean
+    public RowStreamHttpMessageConverter smileRowStreamHttpMessageConverter(MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter) {
+        return new RowStreamHttpMessageConverter(smileHttpMessageConverter.getObjectMapper(), APPLICATION_SMILE);
+    }
+}
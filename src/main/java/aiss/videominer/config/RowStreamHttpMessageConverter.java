@@ -0,0 +1,57 @@
+package aiss.videominer.config;
+
+import aiss.videominer.service.RowStream;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+
+/*
+ * Writes a RowStream as an array through a generator on the response stream, a row at a time, with the ObjectMapper of
+ * the other responses of its format. The generator is only flushed when its buffer is full, not after each row, and
+ * no Content-Length is set, so the response is sent in chunks as soon as the first rows are read.
+ */
+public class RowStreamHttpMessageConverter extends AbstractHttpMessageConverter<RowStream<?>> {
+
+    private final ObjectMapper objectMapper;
+
+    public RowStreamHttpMessageConverter(ObjectMapper objectMapper, MediaType... supportedMediaTypes) {
+        super(supportedMediaTypes);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RowStream.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected RowStream<?> readInternal(Class<? extends RowStream<?>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("A list of rows cannot be read", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(RowStream<?> rows, HttpOutputMessage outputMessage) throws IOException {
+        ObjectWriter writer = (rows.getFilters() == null ? objectMapper.writer() : objectMapper.writer(rows.getFilters()))
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(StreamUtils.nonClosing(outputMessage.getBody()), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            rows.forEach(row -> writer.writeValue(generator, row));
+            generator.writeEndArray();
+        }
+    }
+}
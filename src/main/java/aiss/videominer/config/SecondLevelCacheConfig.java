@@ -0,0 +1,78 @@
+package aiss.videominer.config;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Video;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/*
+ * Regions of the Hibernate second-level cache, created up front in a Caffeine JCache manager so that each one is
+ * bounded: Hibernate is configured to fail on a region that is not declared here instead of creating an unbounded one.
+ * Every region is monitored like the other caches of the application, under cache.gets{cache=<region>}.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Value("${videominer.second-level-cache.entity-max-size:10000}")
+    long entityMaxSize;
+
+    @Value("${videominer.second-level-cache.collection-max-size:10000}")
+    long collectionMaxSize;
+
+    @Value("${videominer.second-level-cache.query-max-size:1000}")
+    long queryMaxSize;
+
+    @Value("${videominer.second-level-cache.ttl:1h}")
+    Duration ttl;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(MeterRegistry meterRegistry) {
+        // A manager of its own, the default one of the provider is shared by every application context of the JVM
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("videominer:" + System.identityHashCode(this)), provider.getDefaultClassLoader());
+        for (String region : new String[] {Channel.CACHE_REGION, Video.CACHE_REGION, Caption.CACHE_REGION}) {
+            create(cacheManager, meterRegistry, region, OptionalLong.of(entityMaxSize));
+        }
+        for (String region : new String[] {Channel.VIDEOS_CACHE_REGION, Video.CAPTIONS_CACHE_REGION}) {
+            create(cacheManager, meterRegistry, region, OptionalLong.of(collectionMaxSize));
+        }
+        create(cacheManager, meterRegistry, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, OptionalLong.of(queryMaxSize));
+        // The last update time of each table, evicting one would let the cached queries on it be read as up to date
+        create(cacheManager, meterRegistry, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, OptionalLong.empty());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+    private void create(CacheManager cacheManager, MeterRegistry meterRegistry, String region, OptionalLong maxSize) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setNativeStatisticsEnabled(true);
+        configuration.setMaximumSize(maxSize);
+        if (maxSize.isPresent()) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        Cache<Object, Object> cache = cacheManager.createCache(region, configuration);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class), region);
+    }
+}
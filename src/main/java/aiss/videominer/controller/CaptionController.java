@@ -1,11 +1,19 @@
 package aiss.videominer.controller;
 
+import aiss.videominer.dto.CaptionDto;
+import aiss.videominer.dto.Dtos;
 import aiss.videominer.exception.*;
 import aiss.videominer.model.Caption;
 import aiss.videominer.model.Video;
 import aiss.videominer.repository.CaptionRepository;
-import aiss.videominer.repository.TokenRepository;
+import aiss.videominer.repository.Filters;
+import aiss.videominer.repository.StreamingQueries;
 import aiss.videominer.repository.VideoRepository;
+import aiss.videominer.service.ChannelIngestService;
+import aiss.videominer.service.EntityTags;
+import aiss.videominer.service.KeysetCursor;
+import aiss.videominer.service.RowStream;
+import aiss.videominer.service.TotalEstimates;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -13,21 +21,30 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Caption", description="Caption management API")
+@SecurityRequirement(name = "Authorization")
 @RestController
 @RequestMapping("/videoMiner/v1")
 public class CaptionController {
@@ -35,19 +52,27 @@ public class CaptionController {
     @Autowired
     CaptionRepository captionRepository;
 
+    @Autowired
+    StreamingQueries streamingQueries;
+
     @Autowired
     VideoRepository videoRepository;
 
     @Autowired
-    TokenRepository tokenRepository;
+    ChannelIngestService channelIngestService;
+
+    @Autowired
+    TotalEstimates totalEstimates;
 
     // GET http://localhost:8080/videoMiner/v1/captions
     @Operation( summary = "Retrieve a list of captions",
-                description = "Get a list of captions with different options in paging, ordering and filtering. Only one of the filter parameters (`id`, `name`, `language`) may be present at the same time. <br /><br />" +
-                        "Each filter parameter corresponds to one of the attributes of the Caption class. For example, `id` filters captions by their unique identifier, `name` filters captions by their name and `language` filters captions by their language. <br /><br />" +
+                description = "Get a list of captions with different options in paging, ordering and filtering. The filter parameters (`id`, `name`, `language`) can be combined, the results match all of them. <br /><br />" +
+                        "Each filter parameter corresponds to one of the attributes of the Caption class. For example, `id` filters captions by their unique identifier, `name` filters captions by their name and `language` filters captions by their language. A value ending with `*` matches the values starting with it. <br /><br />" +
                         "The parameter `page` indicates the page number of results to retrieve, while the `size` parameter specifies the number of results per page. <br />" +
                         "Pages are zero-indexed, so `page=0` returns the first page of results. If there is no result found the response will return empty. <br /><br />"+
-                        "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.",
+                        "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.<br /><br />" +
+                        "With the `after` parameter the list is read with a cursor instead of a page number. An empty `after` returns the first `size` results and the response carries the cursor of the next ones in the `X-Next-Cursor` header, which is absent on the last page. A cursor is only valid with the `order` it was issued for.<br /><br />" +
+                        "The matching rows are not counted unless `total=true` is passed, the response then carries an estimate of their number in the `X-Total-Count` header, refreshed periodically.",
                 tags = {"captions", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content (array = @ArraySchema(schema=@Schema(implementation = Caption.class)), mediaType = "application/json")}),
@@ -56,81 +81,56 @@ public class CaptionController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/captions")
-    public List<Caption> findAll(@RequestHeader HttpHeaders header,
-                                 @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
-                                 @RequestParam(required = false) String id, @RequestParam(required = false) String name,
-                                 @RequestParam(required = false) String language, @RequestParam(required = false) String order) throws TokenRequiredException, TokenNotValidException, BadRequestParameterField {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Page<Caption> pageChannels;
-            Pageable paging;
-            if(order!=null){
-                if(order.startsWith("-")){
-                    paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-                }
-                else{
-                    paging = PageRequest.of(page, size, Sort.by(order).ascending());
-                }
-            }else{
-                paging = PageRequest.of(page, size);
-            }
-            int count = 0;
-            if (id != null) count++;
-            if (name != null) count++;
-            if (language != null) count++;
-
-            if (count > 1) {
-                throw new BadRequestParameterField();
-            }
-
-            if (id != null) {
-                pageChannels = captionRepository.findById(id, paging);
-            } else if (name != null) {
-                pageChannels = captionRepository.findByName(name, paging);
-            } else if (language != null) {
-                pageChannels = captionRepository.findByLanguage(language, paging);
-            } else {
-                pageChannels = captionRepository.findAll(paging);
-            }
-            return pageChannels.getContent();
+    public ResponseEntity<RowStream<CaptionDto>> findAll(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                 @RequestParam(required = false) String id, @RequestParam(required = false) String name,
+                                                 @RequestParam(required = false) String language,
+                                                 @RequestParam(required = false) String order, @RequestParam(defaultValue = "false") boolean total,
+                                                 @RequestParam(required = false) String after) throws BadRequestCursor {
+        Specification<Caption> filter = Filters.all(
+                Filters.equal("id", id),
+                Filters.equal("name", name),
+                Filters.equal("language", language));
+        HttpHeaders headers = totalEstimates.headers(total, TotalEstimates.key("captions", id, name, language), () -> captionRepository.count(filter));
+        Sort sort = KeysetCursor.sort(order);
+        RowStream<Caption> captions;
+        if (after != null) {
+            ScrollPosition position = KeysetCursor.decode(after, order, Caption.class);
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(Caption.class, filter, position, size, sort);
+            headers.addAll(KeysetCursor.headers(lastKeys, order));
+            captions = streamingQueries.after(Caption.class, filter, position, lastKeys, size, sort);
         } else {
-            throw new TokenNotValidException();
+            captions = streamingQueries.page(Caption.class, filter, page, size, sort);
         }
+        return ResponseEntity.ok().headers(headers).body(captions.map(CaptionDto::of));
     }
 
     // GET http://localhost:8080/videoMiner/v1/captions/{id}
     @Operation( summary = "Retrieve a Caption by Id",
-            description = "Get a Caption object by specifying its Id.",
+            description = "Get a Caption object by specifying its Id.<br >The response carries an ETag and a Last-Modified header, a request with a matching `If-None-Match` or a later `If-Modified-Since` gets a 304 without body.",
             tags = {"captions", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Caption.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/captions/{id}")
-    public Caption findById(@Parameter(description = "Id of the caption to be searched") @PathVariable String id, @RequestHeader HttpHeaders header) throws TokenRequiredException, TokenNotValidException, CaptionNotFoundException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<CaptionDto> findById(@Parameter(description = "Id of the caption to be searched") @PathVariable String id, WebRequest request) throws CaptionNotFoundException {
+        Optional<Caption> caption = captionRepository.findById(id);
+        if(!caption.isPresent()){
+            throw new CaptionNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Caption> caption = captionRepository.findById(id);
-            if(!caption.isPresent()){
-                throw new CaptionNotFoundException();
-            }
-            return caption.get();
-        } else {
-            throw new TokenNotValidException();
+        Instant lastModified = caption.get().getLastModified();
+        if (request.checkNotModified(EntityTags.of(lastModified), lastModified.toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
         }
+        return ResponseEntity.ok(CaptionDto.of(caption.get()));
     }
 
     // GET http://localhost:8080/videoMiner/v1/videos/{videoId}/captions
     @Operation( summary = "Retrieve the list of captions of a Video",
-            description = "Get a list of captions associated with the video Id.",
+            description = "Get a list of captions associated with the video Id.<br >The list is paged with the `page`, `size` and `order` parameters, or read with a cursor through the `after` parameter as in the list of captions.",
             tags = {"captions", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Caption.class)), mediaType = "application/json")}),
@@ -139,54 +139,46 @@ public class CaptionController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/videos/{videoId}/captions")
-    public List<Caption> getAllCaptionsByVideo(@Parameter (description = "The Id of the video which captions are to be retrieved") @PathVariable("videoId") String videoId,
-                                               @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<List<CaptionDto>> getAllCaptionsByVideo(@Parameter (description = "The Id of the video which captions are to be retrieved") @PathVariable("videoId") String videoId,
+                                                               @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                               @RequestParam(required = false) String order, @RequestParam(required = false) String after)
+            throws VideoNotFoundException, BadRequestCursor {
+        if (videoRepository.findById(videoId).isEmpty()) {
+            throw new VideoNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Video> video = videoRepository.findById(videoId);
-            if (!video.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            return video.get().getCaptions();
-        } else {
-            throw new TokenNotValidException();
+        Sort sort = KeysetCursor.sort(order);
+        if (after != null) {
+            Window<Caption> window = captionRepository.findByVideoId(videoId, KeysetCursor.decode(after, order, Caption.class), size, sort);
+            return ResponseEntity.ok().headers(KeysetCursor.headers(window, order)).body(Dtos.map(window.getContent(), CaptionDto::of));
         }
+        return ResponseEntity.ok(Dtos.map(captionRepository.findByVideoId(videoId, PageRequest.of(page, size, sort)).getContent(), CaptionDto::of));
     }
 
     // POST http://localhost:8080/videoMiner/v1/videos/{videoId}/captions
     @Operation( summary = "Insert a Caption into the list of captions of a Video",
-            description = "Add a Caption object into the list of captions associated with the video Id.<br >The Caption data is passed in the body of the request in JSON format.",
+            description = "Add a Caption object into the list of captions associated with the video Id.<br >The Caption data is passed in the body of the request in JSON format.<br >The response is the created Caption, whose URL is given in the Location header.",
             tags = {"captions", "post"})
     @ApiResponses({
             @ApiResponse(responseCode = "201", content = {@Content(schema=@Schema(implementation = Caption.class), mediaType = "application/json")}),
             @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "409", content = {@Content(schema=@Schema())})
     })
-    @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/videos/{videoId}/captions")
-    public List<Caption> create(@Parameter(description = "The ID of the video to which the caption is added") @PathVariable("videoId") String videoId,
-                                @Valid @RequestBody Caption caption, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException, IdCannotBeNull {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<CaptionDto> create(@Parameter(description = "The ID of the video to which the caption is added") @PathVariable("videoId") String videoId,
+                                          @Valid @RequestBody Caption caption) throws VideoNotFoundException, IdCannotBeNull, IdAlreadyExists {
+        if(caption.getId() == null){
+            throw new IdCannotBeNull();
         }
-        else if(tokenRepository.existsById(token)) {
-            if(caption.getId() == null){
-                throw new IdCannotBeNull();
-            }
-            Optional<Video> video = videoRepository.findById(videoId);
-            if (!video.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            video.get().getCaptions().add(caption);
-            videoRepository.save(video.get());
-            return video.get().getCaptions();
-        } else {
-            throw new TokenNotValidException();
+        if (videoRepository.findById(videoId).isEmpty()) {
+            throw new VideoNotFoundException();
+        }
+        try {
+            Caption created = channelIngestService.addCaption(videoId, caption);
+            return ResponseEntity.created(URI.create("/videoMiner/v1/captions/" + created.getId())).body(CaptionDto.of(created));
+        } catch (DataIntegrityViolationException e) {
+            throw new IdAlreadyExists();
         }
     }
 
@@ -202,28 +194,19 @@ public class CaptionController {
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PutMapping("/captions/{id}")
     public void update(@Valid @RequestBody Caption updatedCaption,
-                       @Parameter(description = "Id of the caption to be updated") @PathVariable String id,
-                       @RequestHeader HttpHeaders header) throws CaptionNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+                       @Parameter(description = "Id of the caption to be updated") @PathVariable String id) throws CaptionNotFoundException {
+        Optional<Caption> captionData = captionRepository.findById(id);
+        if(!captionData.isPresent()){
+            throw new CaptionNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Caption> captionData = captionRepository.findById(id);
-            if(!captionData.isPresent()){
-                throw new CaptionNotFoundException();
-            }
-            Caption _caption = captionData.get();
-            if(updatedCaption.getName()!=null){
-                _caption.setName(updatedCaption.getName());
-            }
-            if(updatedCaption.getLanguage()!=null) {
-                _caption.setLanguage(updatedCaption.getLanguage());
-            }
-            captionRepository.save(_caption);
-        } else {
-            throw new TokenNotValidException();
+        Caption _caption = captionData.get();
+        if(updatedCaption.getName()!=null){
+            _caption.setName(updatedCaption.getName());
+        }
+        if(updatedCaption.getLanguage()!=null) {
+            _caption.setLanguage(updatedCaption.getLanguage());
         }
+        captionRepository.save(_caption);
     }
 
     // DELETE http://localhost:8080/videoMiner/v1/captions/{id}
@@ -237,21 +220,12 @@ public class CaptionController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/captions/{id}")
-    public void delete(@Parameter(description = "Id of the caption to be deleted") @PathVariable String id,
-                       @RequestHeader HttpHeaders header) throws TokenRequiredException, TokenNotValidException, CaptionNotFoundException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void delete(@Parameter(description = "Id of the caption to be deleted") @PathVariable String id) throws CaptionNotFoundException {
+        if(captionRepository.existsById(id)) {
+            captionRepository.deleteById(id);
         }
-        else if(tokenRepository.existsById(token)) {
-            if(captionRepository.existsById(id)) {
-                captionRepository.deleteById(id);
-            }
-            else {
-                throw new CaptionNotFoundException();
-            }
-        } else {
-            throw new TokenNotValidException();
+        else {
+            throw new CaptionNotFoundException();
         }
     }
 }
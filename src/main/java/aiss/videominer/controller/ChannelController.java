@@ -1,35 +1,55 @@
 package aiss.videominer.controller;
 
 
+import aiss.videominer.dto.ChannelDto;
 import aiss.videominer.exception.*;
 import aiss.videominer.model.Channel;
 import aiss.videominer.repository.CaptionRepository;
 import aiss.videominer.repository.ChannelRepository;
 import aiss.videominer.repository.CommentRepository;
-import aiss.videominer.repository.TokenRepository;
+import aiss.videominer.repository.Filters;
+import aiss.videominer.repository.StreamingQueries;
+import aiss.videominer.repository.TimePeriod;
 import aiss.videominer.repository.UserRepository;
 import aiss.videominer.repository.VideoRepository;
+import aiss.videominer.search.SearchIndex;
+import aiss.videominer.service.ChannelFetchPlan;
+import aiss.videominer.service.ChannelIngestService;
+import aiss.videominer.service.EntityTags;
+import aiss.videominer.service.IngestJob;
+import aiss.videominer.service.IngestJobService;
+import aiss.videominer.service.KeysetCursor;
+import aiss.videominer.service.RowStream;
+import aiss.videominer.service.TotalEstimates;
+import aiss.videominer.service.UpsertSummary;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Channel", description="Channel management API")
+@SecurityRequirement(name = "Authorization")
 @RestController
 @RequestMapping("/videoMiner/v1")
 public class ChannelController {
@@ -37,6 +57,9 @@ public class ChannelController {
     @Autowired
     ChannelRepository channelRepository;
 
+    @Autowired
+    StreamingQueries streamingQueries;
+
     @Autowired
     VideoRepository videoRepository;
 
@@ -50,98 +73,115 @@ public class ChannelController {
     UserRepository userRepository;
 
     @Autowired
-    TokenRepository tokenRepository;
+    ChannelIngestService channelIngestService;
+
+    @Autowired
+    IngestJobService ingestJobService;
+
+    @Autowired
+    TotalEstimates totalEstimates;
+
+    @Autowired
+    SearchIndex searchIndex;
 
     // GET http://localhost:8080/videoMiner/v1/channels
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/channels")
     @Operation( summary = "Retrieve a list of channels",
-            description = "Get a list of channels with different options in paging, ordering and filtering. Only one of the filter parameters (`id`, `name`, `description`, `createdTime`) may be present at the same time.<br /><br />" +
-                    "Each filter parameter corresponds to one of the attributes of the Channel class. For example, `id` filters channels by their unique identifier, `name` filters channels by their name, `description` filters channels by their description, and `createdTime` filters channels by the time they were created.<br /><br />" +
+            description = "Get a list of channels with different options in paging, ordering and filtering. The filter parameters (`id`, `name`, `description`, `createdTime`) can be combined, the results match all of them.<br /><br />" +
+                    "Each filter parameter corresponds to one of the attributes of the Channel class. For example, `id` filters channels by their unique identifier, `name` filters channels by their name, `description` filters channels by their description, and `createdTime` filters channels by the time they were created. A value ending with `*` matches the values starting with it, except for `createdTime` which takes a time.<br /><br />" +
+                    "Times are ISO-8601 instants such as `2024-05-01T10:00:00Z`, or a day `2024-05-01`, a month `2024-05` or a year `2024` in UTC. `createdTime` keeps the channels created within that time, `from` the ones created since its start and `to` the ones created up to its end. Ordering by `createdTime` reads the channels from the index of that column.<br /><br />" +
                     "The parameter `page` indicates the page number of results to retrieve, while the `size` parameter specifies the number of results per page.<br />" +
                     "Pages are zero-indexed, so `page=0` returns the first page of results. If there is no result found the response will return empty.<br /><br />"+
-                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.",
+                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.<br /><br />" +
+                    "The `fields` parameter selects the Channel attributes to return, for example `fields=id,name`, and `expand` selects the associations to load among `videos`, `videos.comments` and `videos.captions`. Without any of them the whole Channel is returned.<br /><br />" +
+                    "With the `after` parameter the list is read with a cursor instead of a page number. An empty `after` returns the first `size` results and the response carries the cursor of the next ones in the `X-Next-Cursor` header, which is absent on the last page. A cursor is only valid with the `order` it was issued for.<br /><br />" +
+                    "The matching rows are not counted unless `total=true` is passed, the response then carries an estimate of their number in the `X-Total-Count` header, refreshed periodically.",
             tags = {"channels", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Channel.class)), mediaType = "application/json")}),
             @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
     })
-    public List<Channel> findAll(@RequestHeader HttpHeaders header,
-                                 @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
-                                 @RequestParam(required = false) String id, @RequestParam(required = false) String name,
-                                 @RequestParam(required = false) String description, @RequestParam(required = false) String createdTime,
-                                 @RequestParam(required = false) String order) throws TokenNotValidException, TokenRequiredException, BadRequestParameterField {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Page<Channel> pageChannels;
-            Pageable paging;
-            if(order!=null){
-                if(order.startsWith("-")){
-                    paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-                }
-                else{
-                    paging = PageRequest.of(page, size, Sort.by(order).ascending());
-                }
-            }else{
-                paging = PageRequest.of(page, size);
-            }
-
-            int count = 0;
-            if (id != null) count++;
-            if (name != null) count++;
-            if (description != null) count++;
-            if (createdTime != null) count++;
-
-            if (count > 1) {
-                throw new BadRequestParameterField();
-            }
-
-            if (id != null) {
-                pageChannels = channelRepository.findByIdContaining(id, paging);
-            } else if (name != null) {
-                pageChannels = channelRepository.findByNameContaining(name, paging);
-            } else if (description != null) {
-                pageChannels = channelRepository.findByDescriptionContaining(description, paging);
-            } else if (createdTime != null) {
-                pageChannels = channelRepository.findByCreatedTimeContaining(createdTime, paging);
-            } else {
-                pageChannels = channelRepository.findAll(paging);
-            }
-            return pageChannels.getContent();
+    public ResponseEntity<RowStream<ChannelDto>> findAll(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                       @RequestParam(required = false) String id, @RequestParam(required = false) String name,
+                                                       @RequestParam(required = false) String description, @RequestParam(required = false) String createdTime,
+                                                       @RequestParam(required = false) String from, @RequestParam(required = false) String to,
+                                                       @RequestParam(required = false) String order, @RequestParam(defaultValue = "false") boolean total,
+                                                       @RequestParam(required = false) String after, @RequestParam(required = false) String fields,
+                                                       @RequestParam(required = false) String expand) throws BadRequestCursor, BadRequestTimestamp, BadRequestFetchPlan {
+        ChannelFetchPlan plan = ChannelFetchPlan.of(fields, expand);
+        Specification<Channel> filter = Filters.all(
+                Filters.contains("id", id),
+                Filters.contains("name", name),
+                Filters.contains("description", description),
+                Filters.within("createdTime", TimePeriod.parse(createdTime)),
+                Filters.from("createdTime", TimePeriod.parse(from)),
+                Filters.to("createdTime", TimePeriod.parse(to)));
+        HttpHeaders headers = totalEstimates.headers(total, TotalEstimates.key("channels", id, name, description, createdTime, from, to), () -> channelRepository.count(filter));
+        Sort sort = KeysetCursor.sort(order);
+        RowStream<Channel> channels;
+        if (after != null) {
+            ScrollPosition position = KeysetCursor.decode(after, order, Channel.class);
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(Channel.class, filter, position, size, sort);
+            headers.addAll(KeysetCursor.headers(lastKeys, order));
+            channels = streamingQueries.after(Channel.class, filter, position, lastKeys, size, sort);
         } else {
-            throw new TokenNotValidException();
+            channels = streamingQueries.page(Channel.class, filter, page, size, sort);
         }
+        return ResponseEntity.ok().headers(headers).body(plan.view(channels));
+    }
+
+    // GET http://localhost:8080/videoMiner/v1/channels/search?q=...
+    @Operation( summary = "Search channels",
+            description = "Search channels by their name and description. The `q` parameter uses the Lucene query syntax: every word must be present, words between quotes match a phrase, `word*` matches a prefix and `OR`, `NOT` and parentheses combine terms.<br /><br />" +
+                    "Results are ordered by relevance and paged with `page` and `size`. The `X-Total-Count` header gives the number of matches.",
+            tags = {"channels", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Channel.class)), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping("/channels/search")
+    public ResponseEntity<MappingJacksonValue> search(@RequestParam String q, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                      @RequestParam(required = false) String fields, @RequestParam(required = false) String expand) throws BadRequestSearchQuery, BadRequestFetchPlan {
+        SearchIndex.Hits hits = searchIndex.search(SearchIndex.Type.CHANNEL, q, page, size);
+        ChannelFetchPlan plan = ChannelFetchPlan.of(fields, expand);
+        List<Channel> channels = SearchIndex.ranked(hits.ids(), channelRepository.findAllById(hits.ids()), Channel::getId);
+        plan.initialize(channels);
+        return ResponseEntity.ok().header(TotalEstimates.TOTAL_COUNT_HEADER, String.valueOf(hits.total())).body(plan.view(channels));
     }
 
     // GET http://localhost:8080/videoMiner/v1/channels/{id}
     @Operation( summary = "Retrieve a Channel by Id",
-            description = "Get a Channel object by specifying its Id.",
+            description = "Get a Channel object by specifying its Id.<br >The `fields` and `expand` parameters restrict the attributes and associations returned, as in the list of channels.<br >The response carries an ETag and a Last-Modified header, a request with a matching `If-None-Match` or a later `If-Modified-Since` gets a 304 without body.",
             tags = {"channels", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Channel.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/channels/{id}")
-    public Channel findById(@PathVariable String id, @RequestHeader HttpHeaders header) throws ChannelNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<MappingJacksonValue> findById(@PathVariable String id, @RequestParam(required = false) String fields,
+                                                        @RequestParam(required = false) String expand, WebRequest request) throws ChannelNotFoundException, BadRequestFetchPlan {
+        ChannelFetchPlan plan = ChannelFetchPlan.of(fields, expand);
+        // The channel and its videos collection come from the second-level cache once read, a fetch join would always
+        // go to the database
+        Optional<Channel> channel = channelRepository.findById(id);
+        if (!channel.isPresent()) {
+            throw new ChannelNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Channel> channel = channelRepository.findById(id);
-            if (!channel.isPresent()) {
-                throw new ChannelNotFoundException();
-            }
-            return channel.get();
-        } else {
-            throw new TokenNotValidException();
+        // Checked before the videos are loaded and serialized
+        Instant lastModified = channel.get().getLastModified();
+        if (request.checkNotModified(EntityTags.of(lastModified, plan.variant()), lastModified.toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
         }
+        plan.initialize(List.of(channel.get()));
+        return ResponseEntity.ok(plan.view(channel.get()));
     }
 
     // POST http://localhost:8080/videoMiner/v1/channels
@@ -155,20 +195,52 @@ public class ChannelController {
     })
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/channels")
-    public Channel create(@Valid @RequestBody Channel channel, @RequestHeader HttpHeaders header) throws TokenNotValidException, TokenRequiredException, IdCannotBeNull {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ChannelDto create(@Valid @RequestBody Channel channel) throws IdCannotBeNull {
+        if(channel.getId() == null){
+            throw new IdCannotBeNull();
         }
-        else if(tokenRepository.existsById(token)) {
-            if(channel.getId() == null){
-                throw new IdCannotBeNull();
-            }
 
-            return channelRepository.save(channel);
-        } else {
-            throw new TokenNotValidException();
+        return ChannelDto.of(channelIngestService.ingest(channel));
+    }
+
+    // POST http://localhost:8080/videoMiner/v1/channels?mode=upsert
+    @Operation( summary = "Insert or update a Channel",
+            description = "Store a Channel object by comparing it with the stored one, the Channel data is passed in the body of the request in JSON format.<br >" +
+                    "Only the new videos, comments and captions are inserted and only the changed fields are updated. With `prune=true`, the stored videos, comments and captions that are not in the body are deleted.<br >" +
+                    "The response summarizes how many rows of each kind were inserted, updated, left unchanged and removed.",
+            tags = {"channels", "post"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = UpsertSummary.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @PostMapping(value = "/channels", params = "mode=upsert")
+    public UpsertSummary upsert(@Valid @RequestBody Channel channel, @RequestParam(defaultValue = "false") boolean prune) throws IdCannotBeNull {
+        if(channel.getId() == null){
+            throw new IdCannotBeNull();
+        }
+        return channelIngestService.upsert(channel, prune);
+    }
+
+    // POST http://localhost:8080/videoMiner/v1/channels?async=true
+    @Operation( summary = "Insert a Channel asynchronously",
+            description = "Queue a Channel object to be stored in the background, the Channel data is passed in the body of the request in JSON format.<br >" +
+                    "The response is the ingest job, whose status and progress can be followed at the URL of the Location header. The channel is stored in one transaction: the videos become visible when the job is `COMPLETED`, and nothing is stored when it is `FAILED`.<br >When the queue is full the request is refused with 503 and a Retry-After header.",
+            tags = {"channels", "post"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema=@Schema(implementation = IngestJob.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "503", content = {@Content(schema=@Schema())})
+    })
+    @PostMapping(value = "/channels", params = "async=true")
+    public ResponseEntity<IngestJob> createAsync(@Valid @RequestBody Channel channel) throws IdCannotBeNull {
+        if(channel.getId() == null){
+            throw new IdCannotBeNull();
         }
+        IngestJob job = ingestJobService.submit(channel);
+        return ResponseEntity.accepted().location(URI.create("/videoMiner/v1/ingest/jobs/" + job.getId())).body(job);
     }
 
     // PUT http://localhost:8080/videoMiner/v1/channels/{id}
@@ -183,27 +255,19 @@ public class ChannelController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PutMapping("/channels/{id}")
-    public void update(@Valid @RequestBody Channel updatedChannel, @PathVariable String id, @RequestHeader HttpHeaders header) throws ChannelNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void update(@Valid @RequestBody Channel updatedChannel, @PathVariable String id) throws ChannelNotFoundException {
+        Optional<Channel> channelData = channelRepository.findById(id);
+        if (!channelData.isPresent()) {
+            throw new ChannelNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Channel> channelData = channelRepository.findById(id);
-            if (!channelData.isPresent()) {
-                throw new ChannelNotFoundException();
-            }
-            Channel _channel = channelData.get();
-            if (updatedChannel.getName() != null) {
-                _channel.setName(updatedChannel.getName());
-            }
-            if (updatedChannel.getDescription() != null) {
-                _channel.setDescription(updatedChannel.getDescription());
-            }
-            channelRepository.save(_channel);
-        } else {
-            throw new TokenNotValidException();
+        Channel _channel = channelData.get();
+        if (updatedChannel.getName() != null) {
+            _channel.setName(updatedChannel.getName());
         }
+        if (updatedChannel.getDescription() != null) {
+            _channel.setDescription(updatedChannel.getDescription());
+        }
+        channelRepository.save(_channel);
     }
 
     // DELETE http://localhost:8080/videoMiner/v1/channels/{id}
@@ -217,20 +281,12 @@ public class ChannelController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/channels/{id}")
-    public void delete(@PathVariable String id, @RequestHeader HttpHeaders header) throws TokenRequiredException, TokenNotValidException, ChannelNotFoundException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void delete(@PathVariable String id) throws ChannelNotFoundException {
+        if(channelRepository.existsById(id)) {
+            channelRepository.deleteById(id);
         }
-        else if(tokenRepository.existsById(token)) {
-            if(channelRepository.existsById(id)) {
-                channelRepository.deleteById(id);
-            }
-            else{
-                throw new ChannelNotFoundException();
-            }
-        } else {
-            throw new TokenNotValidException();
+        else{
+            throw new ChannelNotFoundException();
         }
     }
 }
@@ -1,34 +1,52 @@
 package aiss.videominer.controller;
 
+import aiss.videominer.dto.CommentDto;
+import aiss.videominer.dto.Dtos;
 import aiss.videominer.exception.*;
 import aiss.videominer.model.Comment;
 import aiss.videominer.model.Video;
 import aiss.videominer.repository.CommentRepository;
-import aiss.videominer.repository.TokenRepository;
+import aiss.videominer.repository.Filters;
+import aiss.videominer.repository.StreamingQueries;
+import aiss.videominer.repository.TimePeriod;
 import aiss.videominer.repository.UserRepository;
 import aiss.videominer.repository.VideoRepository;
+import aiss.videominer.search.SearchIndex;
+import aiss.videominer.service.ChannelIngestService;
+import aiss.videominer.service.EntityTags;
+import aiss.videominer.service.KeysetCursor;
+import aiss.videominer.service.RowStream;
+import aiss.videominer.service.TotalEstimates;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.ArrayList;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Comment", description="Comment management API")
+@SecurityRequirement(name = "Authorization")
 @RestController
 @RequestMapping("/videoMiner/v1")
 public class CommentController {
@@ -36,22 +54,34 @@ public class CommentController {
     @Autowired
     CommentRepository commentRepository;
 
+    @Autowired
+    StreamingQueries streamingQueries;
+
     @Autowired
     VideoRepository videoRepository;
 
+    @Autowired
+    ChannelIngestService channelIngestService;
+
     @Autowired
     UserRepository userRepository;
 
     @Autowired
-    TokenRepository tokenRepository;
+    TotalEstimates totalEstimates;
+
+    @Autowired
+    SearchIndex searchIndex;
 
     // GET http://localhost:8080/videoMiner/v1/comments
     @Operation( summary = "Retrieve a list of comments",
-            description = "Get a list of comments with different options in paging, ordering and filtering. Only one of the filter parameters (`id`, `text`, `createdOn`) may be present at the same time.<br /><br />" +
-                    "Each filter parameter corresponds to one of the attributes of the Comment class. For example, `id` filters comments by their unique identifier, `text` filters comments by their text and `createdOn` filters comments by the time they were created.<br /><br />" +
+            description = "Get a list of comments with different options in paging, ordering and filtering. The filter parameters (`id`, `text`, `createdOn`) can be combined, the results match all of them.<br /><br />" +
+                    "Each filter parameter corresponds to one of the attributes of the Comment class. For example, `id` filters comments by their unique identifier, `text` filters comments by their text and `createdOn` filters comments by the time they were created. A value ending with `*` matches the values starting with it, except for `createdOn` which takes a time.<br /><br />" +
+                    "Times are ISO-8601 instants such as `2024-05-01T10:00:00Z`, or a day `2024-05-01`, a month `2024-05` or a year `2024` in UTC. `createdOn` keeps the comments created within that time, `from` the ones created since its start and `to` the ones created up to its end. Ordering by `createdOn` reads the comments from the index of that column.<br /><br />" +
                     "The parameter `page` indicates the page number of results to retrieve, while the `size` parameter specifies the number of results per page.<br />" +
                     "Pages are zero-indexed, so `page=0` returns the first page of results. If there is no result found the response will return empty.<br /><br />"+
-                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'id' for ascending order and '-id' for descending order.",
+                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'id' for ascending order and '-id' for descending order.<br /><br />" +
+                    "With the `after` parameter the list is read with a cursor instead of a page number. An empty `after` returns the first `size` results and the response carries the cursor of the next ones in the `X-Next-Cursor` header, which is absent on the last page. A cursor is only valid with the `order` it was issued for.<br /><br />" +
+                    "The matching rows are not counted unless `total=true` is passed, the response then carries an estimate of their number in the `X-Total-Count` header, refreshed periodically.",
             tags = {"comments", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Comment.class)), mediaType = "application/json")}),
@@ -60,81 +90,77 @@ public class CommentController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/comments")
-    public List<Comment> findAll(@RequestHeader HttpHeaders header,
-                                 @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
-                                 @RequestParam(required = false) String id, @RequestParam(required = false) String text,
-                                 @RequestParam(required = false) String createdOn,@RequestParam(required = false) String order) throws TokenRequiredException, TokenNotValidException, BadRequestParameterField {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Page<Comment> pageChannels;
-            Pageable paging;
-            if(order!=null){
-                if(order.startsWith("-")){
-                    paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-                }
-                else{
-                    paging = PageRequest.of(page, size, Sort.by(order).ascending());
-                }
-            }else{
-                paging = PageRequest.of(page, size);
-            }
-            int count = 0;
-            if (id != null) count++;
-            if (text != null) count++;
-            if (createdOn != null) count++;
-
-            if (count > 1) {
-                throw new BadRequestParameterField();
-            }
-
-            if (id != null) {
-                pageChannels = commentRepository.findById(id, paging);
-            } else if (text != null) {
-                pageChannels = commentRepository.findByTextContaining(text, paging);
-            } else if (createdOn != null) {
-                pageChannels = commentRepository.findByCreatedOnContaining(createdOn, paging);
-            } else {
-                pageChannels = commentRepository.findAll(paging);
-            }
-            return pageChannels.getContent();
+    public ResponseEntity<RowStream<CommentDto>> findAll(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                 @RequestParam(required = false) String id, @RequestParam(required = false) String text,
+                                                 @RequestParam(required = false) String createdOn,
+                                                 @RequestParam(required = false) String from, @RequestParam(required = false) String to,
+                                                 @RequestParam(required = false) String order, @RequestParam(defaultValue = "false") boolean total,
+                                                 @RequestParam(required = false) String after) throws BadRequestCursor, BadRequestTimestamp {
+        Specification<Comment> filter = Filters.all(
+                Filters.equal("id", id),
+                Filters.contains("text", text),
+                Filters.within("createdOn", TimePeriod.parse(createdOn)),
+                Filters.from("createdOn", TimePeriod.parse(from)),
+                Filters.to("createdOn", TimePeriod.parse(to)));
+        HttpHeaders headers = totalEstimates.headers(total, TotalEstimates.key("comments", id, text, createdOn, from, to), () -> commentRepository.count(filter));
+        Sort sort = KeysetCursor.sort(order);
+        RowStream<Comment> comments;
+        if (after != null) {
+            ScrollPosition position = KeysetCursor.decode(after, order, Comment.class);
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(Comment.class, filter, position, size, sort);
+            headers.addAll(KeysetCursor.headers(lastKeys, order));
+            comments = streamingQueries.after(Comment.class, filter, position, lastKeys, size, sort);
         } else {
-            throw new TokenNotValidException();
+            comments = streamingQueries.page(Comment.class, filter, page, size, sort);
         }
+        return ResponseEntity.ok().headers(headers).body(comments.map(CommentDto::of));
+    }
+
+    // GET http://localhost:8080/videoMiner/v1/comments/search?q=...
+    @Operation( summary = "Search comments",
+            description = "Search comments by their text. The `q` parameter uses the Lucene query syntax: every word must be present, words between quotes match a phrase, `word*` matches a prefix and `OR`, `NOT` and parentheses combine terms.<br /><br />" +
+                    "Results are ordered by relevance and paged with `page` and `size`. The `X-Total-Count` header gives the number of matches.",
+            tags = {"comments", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Comment.class)), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping("/comments/search")
+    public ResponseEntity<List<CommentDto>> search(@RequestParam String q, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) throws BadRequestSearchQuery {
+        SearchIndex.Hits hits = searchIndex.search(SearchIndex.Type.COMMENT, q, page, size);
+        List<Comment> comments = SearchIndex.ranked(hits.ids(), commentRepository.findAllById(hits.ids()), Comment::getId);
+        return ResponseEntity.ok().header(TotalEstimates.TOTAL_COUNT_HEADER, String.valueOf(hits.total())).body(Dtos.map(comments, CommentDto::of));
     }
 
     // GET http://localhost:8080/videoMiner/v1/comments/{id}
     @Operation( summary = "Retrieve a Comment by Id",
-            description = "Get a Comment object by specifying its Id.",
+            description = "Get a Comment object by specifying its Id.<br >The response carries an ETag and a Last-Modified header, a request with a matching `If-None-Match` or a later `If-Modified-Since` gets a 304 without body.",
             tags = {"comments", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Comment.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/comments/{id}")
-    public Comment findById(@PathVariable String id, @RequestHeader HttpHeaders header) throws CommentNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<CommentDto> findById(@PathVariable String id, WebRequest request) throws CommentNotFoundException {
+        Optional<Comment> comment = commentRepository.findById(id);
+        if (!comment.isPresent()) {
+            throw new CommentNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Comment> comment = commentRepository.findById(id);
-            if (!comment.isPresent()) {
-                throw new CommentNotFoundException();
-            }
-            return comment.get();
-        } else {
-            throw new TokenNotValidException();
+        Instant lastModified = comment.get().getLastModified();
+        if (request.checkNotModified(EntityTags.of(lastModified), lastModified.toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
         }
+        return ResponseEntity.ok(CommentDto.of(comment.get()));
     }
 
     // GET http://localhost:8080/videoMiner/v1/videos/{videoId}/comments
     @Operation( summary = "Retrieve the list of comments of a Video",
-            description = "Get a list of comments associated with the video Id.",
+            description = "Get a list of comments associated with the video Id.<br >The list is paged with the `page`, `size` and `order` parameters, or read with a cursor through the `after` parameter as in the list of comments.",
             tags = {"comments", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Comment.class)), mediaType = "application/json")}),
@@ -143,52 +169,45 @@ public class CommentController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/videos/{videoId}/comments")
-    public List<Comment> getAllCommentsByVideo(@PathVariable("videoId") String videoId, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<List<CommentDto>> getAllCommentsByVideo(@PathVariable("videoId") String videoId,
+                                                               @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                               @RequestParam(required = false) String order, @RequestParam(required = false) String after)
+            throws VideoNotFoundException, BadRequestCursor {
+        if (videoRepository.findById(videoId).isEmpty()) {
+            throw new VideoNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Video> video = videoRepository.findById(videoId);
-            if (!video.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            return new ArrayList<>(video.get().getComments());
-        } else {
-            throw new TokenNotValidException();
+        Sort sort = KeysetCursor.sort(order);
+        if (after != null) {
+            Window<Comment> window = commentRepository.findByVideoId(videoId, KeysetCursor.decode(after, order, Comment.class), size, sort);
+            return ResponseEntity.ok().headers(KeysetCursor.headers(window, order)).body(Dtos.map(window.getContent(), CommentDto::of));
         }
+        return ResponseEntity.ok(Dtos.map(commentRepository.findByVideoId(videoId, PageRequest.of(page, size, sort)).getContent(), CommentDto::of));
     }
 
     // POST http://localhost:8080/videoMiner/v1/videos/{videoId}/comments
     @Operation( summary = "Insert a Comment into the list of comments of a Video",
-            description = "Add a Comment object into the list of comments associated with the video Id.<br >The Comment data is passed in the body of the request in JSON format.",
+            description = "Add a Comment object into the list of comments associated with the video Id.<br >The Comment data is passed in the body of the request in JSON format.<br >The response is the created Comment, whose URL is given in the Location header.",
             tags = {"comments", "post"})
     @ApiResponses({
             @ApiResponse(responseCode = "201", content = {@Content(schema=@Schema(implementation = Comment.class), mediaType = "application/json")}),
             @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "409", content = {@Content(schema=@Schema())})
     })
-    @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/videos/{videoId}/comments")
-    public List<Comment> create(@PathVariable("videoId") String videoId, @Valid @RequestBody Comment commentRequest, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException, IdCannotBeNull {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<CommentDto> create(@PathVariable("videoId") String videoId, @Valid @RequestBody Comment commentRequest) throws VideoNotFoundException, IdCannotBeNull, IdAlreadyExists {
+        if(commentRequest.getId() == null){
+            throw new IdCannotBeNull();
         }
-        else if(tokenRepository.existsById(token)) {
-            if(commentRequest.getId() == null){
-                throw new IdCannotBeNull();
-            }
-            Optional<Video> video = videoRepository.findById(videoId);
-            if (!video.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            video.get().getComments().add(commentRequest);
-            videoRepository.save(video.get());
-            return video.get().getComments();
-        } else {
-            throw new TokenNotValidException();
+        if (videoRepository.findById(videoId).isEmpty()) {
+            throw new VideoNotFoundException();
+        }
+        try {
+            Comment comment = channelIngestService.addComment(videoId, commentRequest);
+            return ResponseEntity.created(URI.create("/videoMiner/v1/comments/" + comment.getId())).body(CommentDto.of(comment));
+        } catch (DataIntegrityViolationException e) {
+            throw new IdAlreadyExists();
         }
     }
 
@@ -204,27 +223,19 @@ public class CommentController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PutMapping("/comments/{id}")
-    public void update(@Valid @RequestBody Comment updatedComment, @PathVariable String id, @RequestHeader HttpHeaders header) throws CommentNotFoundException, TokenRequiredException, TokenNotValidException{
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void update(@Valid @RequestBody Comment updatedComment, @PathVariable String id) throws CommentNotFoundException{
+        Optional<Comment> commentData = commentRepository.findById(id);
+        if (!commentData.isPresent()) {
+            throw new CommentNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Comment> commentData = commentRepository.findById(id);
-            if (!commentData.isPresent()) {
-                throw new CommentNotFoundException();
-            }
-            Comment _comment = commentData.get();
-            if(updatedComment.getText()!=null){
-                _comment.setText(updatedComment.getText());
-            }
-            if(updatedComment.getCreatedOn()!=null){
-                _comment.setCreatedOn(updatedComment.getCreatedOn());
-            }
-            commentRepository.save(_comment);
-        } else {
-            throw new TokenNotValidException();
+        Comment _comment = commentData.get();
+        if(updatedComment.getText()!=null){
+            _comment.setText(updatedComment.getText());
         }
+        if(updatedComment.getCreatedOn()!=null){
+            _comment.setCreatedOn(updatedComment.getCreatedOn());
+        }
+        commentRepository.save(_comment);
     }
 
     // DELETE http://localhost:8080/videoMiner/v1/comments/{id}
@@ -238,19 +249,11 @@ public class CommentController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/comments/{id}")
-    public void delete(@PathVariable String id, @RequestHeader HttpHeaders header) throws CommentNotFoundException, TokenNotValidException, TokenRequiredException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Comment> comment = commentRepository.findById(id);
-            if(!comment.isPresent()) {
-                throw new CommentNotFoundException();
-            }
-            commentRepository.deleteById(id);
-        } else {
-            throw new TokenNotValidException();
+    public void delete(@PathVariable String id) throws CommentNotFoundException {
+        Optional<Comment> comment = commentRepository.findById(id);
+        if(!comment.isPresent()) {
+            throw new CommentNotFoundException();
         }
+        commentRepository.deleteById(id);
     }
 }
@@ -0,0 +1,69 @@
+package aiss.videominer.controller;
+
+import aiss.videominer.exception.ChannelNotFoundException;
+import aiss.videominer.model.Channel;
+import aiss.videominer.repository.ChannelRepository;
+import aiss.videominer.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Optional;
+
+@Tag(name="Export", description="Bulk export API")
+@SecurityRequirement(name = "Authorization")
+@RestController
+@RequestMapping("/videoMiner/v1")
+public class ExportController {
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @Autowired
+    ExportService exportService;
+
+    // GET http://localhost:8080/videoMiner/v1/channels/{id}/export
+    @Operation( summary = "Export a Channel",
+            description = "Get a Channel with its videos, comments and captions as NDJSON: a single line holding the same JSON as the Channel retrieved by Id.<br >The response is written while it is read from the database and is compressed with gzip when the request accepts it.",
+            tags = {"export", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Channel.class), mediaType = "application/x-ndjson")}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/channels/{id}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportChannel(@PathVariable String id, HttpServletResponse response) throws ChannelNotFoundException, IOException {
+        Optional<Channel> channel = channelRepository.findById(id);
+        if (!channel.isPresent()) {
+            throw new ChannelNotFoundException();
+        }
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportChannel(channel.get(), response.getOutputStream());
+    }
+
+    // GET http://localhost:8080/videoMiner/v1/export
+    @Operation( summary = "Export every Channel",
+            description = "Get all the channels with their videos, comments and captions as NDJSON, one line per Channel holding the same JSON as the Channel retrieved by Id, ordered by id.<br >The whole store is read with one query per table and written while it is read, the response is compressed with gzip when the request accepts it.",
+            tags = {"export", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Channel.class), mediaType = "application/x-ndjson")}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportAll(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportAll(response.getOutputStream());
+    }
+}
@@ -0,0 +1,45 @@
+package aiss.videominer.controller;
+
+import aiss.videominer.exception.IngestJobNotFoundException;
+import aiss.videominer.service.IngestJob;
+import aiss.videominer.service.IngestJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+@Tag(name="Ingest job", description="Asynchronous ingestion API")
+@SecurityRequirement(name = "Authorization")
+@RestController
+@RequestMapping("/videoMiner/v1")
+public class IngestJobController {
+
+    @Autowired
+    IngestJobService ingestJobService;
+
+    // GET http://localhost:8080/videoMiner/v1/ingest/jobs/{id}
+    @Operation( summary = "Retrieve an ingest job by Id",
+            description = "Get the status (`QUEUED`, `RUNNING`, `COMPLETED` or `FAILED`), the progress and the error, if any, of a channel or video posted with `async=true`.<br >Finished jobs are kept for a limited time.",
+            tags = {"ingest", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = IngestJob.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping("/ingest/jobs/{id}")
+    public IngestJob findById(@Parameter(description = "Id of the ingest job") @PathVariable String id) throws IngestJobNotFoundException {
+        IngestJob job = ingestJobService.find(id);
+        if (job == null) {
+            throw new IngestJobNotFoundException();
+        }
+        return job;
+    }
+}
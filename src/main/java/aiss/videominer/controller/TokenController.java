@@ -4,17 +4,24 @@ import aiss.videominer.exception.IdCannotBeNull;
 import aiss.videominer.model.Channel;
 import aiss.videominer.model.Token;
 import aiss.videominer.repository.TokenRepository;
+import aiss.videominer.security.RateLimiter;
+import aiss.videominer.security.TokenCache;
+import aiss.videominer.security.TokenSigner;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @Tag(name="Token", description="Token management API")
 @RestController
 @RequestMapping("/videoMiner/v1")
@@ -23,9 +30,19 @@ public class TokenController {
     @Autowired
     TokenRepository repository;
 
+    @Autowired
+    TokenCache tokenCache;
+
+    @Autowired
+    TokenSigner tokenSigner;
+
+    @Autowired
+    RateLimiter rateLimiter;
+
     // POST http://localhost:8080/videoMiner/api/v1/tokens
     @Operation( summary = "Insert a Token",
-            description = "Add a Token object, the Token data is passed in the body of the request in JSON format.",
+            description = "Add a Token object, the Token data is passed in the body of the request in JSON format.<br >" +
+                    "When VideoMiner runs with signed tokens, the id is used as the subject of a new signed token, which is returned in the id field together with its expiration and is not stored.",
             tags = {"tokens", "post"})
     @ApiResponses({
             @ApiResponse(responseCode = "201", content = {@Content(schema=@Schema(implementation = Channel.class), mediaType = "application/json")}),
@@ -37,8 +54,30 @@ public class TokenController {
         if(token.getId() == null){
             throw new IdCannotBeNull();
         }
+        if (tokenSigner.isEnabled()) {
+            Token signed = new Token();
+            signed.setExpiresAt(tokenSigner.expiration());
+            signed.setId(tokenSigner.sign(token.getId(), signed.getExpiresAt()));
+            return signed;
+        }
         repository.save(token);
+        tokenCache.put(token.getId());
 
         return token;
     }
+
+    // GET http://localhost:8080/videoMiner/v1/token/usage
+    @Operation( summary = "Retrieve the usage of the current Token",
+            description = "Get the number of calls allowed and rejected by the rate limit for the token passed in the Authorization header, grouped by endpoint class (`read`, `write` and `bulk`).",
+            tags = {"tokens", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @SecurityRequirement(name = "Authorization")
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping("/token/usage")
+    public Map<String, Map<String, Long>> getUsage(@RequestHeader(HttpHeaders.AUTHORIZATION) String token) {
+        return rateLimiter.usage(token);
+    }
 }
@@ -1,13 +1,20 @@
 package aiss.videominer.controller;
 
+import aiss.videominer.dto.Dtos;
+import aiss.videominer.dto.UserDto;
 import aiss.videominer.exception.*;
 import aiss.videominer.model.Comment;
 import aiss.videominer.model.User;
 import aiss.videominer.model.Video;
 import aiss.videominer.repository.CommentRepository;
-import aiss.videominer.repository.TokenRepository;
+import aiss.videominer.repository.Filters;
+import aiss.videominer.repository.StreamingQueries;
 import aiss.videominer.repository.UserRepository;
+import aiss.videominer.repository.UserSpecifications;
 import aiss.videominer.repository.VideoRepository;
+import aiss.videominer.service.KeysetCursor;
+import aiss.videominer.service.RowStream;
+import aiss.videominer.service.TotalEstimates;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -15,22 +22,25 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Tag(name="User", description="User management API")
+@SecurityRequirement(name = "Authorization")
 @RestController
 @RequestMapping("/videoMiner/v1")
 public class UserController {
@@ -39,7 +49,7 @@ public class UserController {
     UserRepository userRepository;
 
     @Autowired
-    TokenRepository tokenRepository;
+    StreamingQueries streamingQueries;
 
     @Autowired
     VideoRepository videoRepository;
@@ -47,13 +57,18 @@ public class UserController {
     @Autowired
     CommentRepository commentRepository;
 
+    @Autowired
+    TotalEstimates totalEstimates;
+
     // GET http://localhost:8080/videoMiner/v1/users
     @Operation( summary = "Retrieve a list of users",
-            description = "Get a list of users with different options in paging, ordering and filtering. Only one of the filter parameters (`id`, `name`, `userLink`, `pictureLink`) may be present at the same time.<br /><br />" +
-                    "Each filter parameter corresponds to one of the attributes of the User class. For example, `id` filters users by their unique identifier, `userLink` filters users by their user link and `pictureLink` filters users by their picture link.<br /><br />" +
+            description = "Get a list of users with different options in paging, ordering and filtering. The filter parameters (`id`, `name`, `userLink`, `pictureLink`) can be combined, the results match all of them.<br /><br />" +
+                    "Each filter parameter corresponds to one of the attributes of the User class. For example, `id` filters users by their unique identifier, `userLink` filters users by their user link and `pictureLink` filters users by their picture link. A value ending with `*` matches the values starting with it.<br /><br />" +
                     "The parameter `page` indicates the page number of results to retrieve, while the `size` parameter specifies the number of results per page.<br />" +
                     "Pages are zero-indexed, so `page=0` returns the first page of results. If there is no result found the response will return empty.<br /><br />"+
-                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.",
+                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.<br /><br />" +
+                    "With the `after` parameter the list is read with a cursor instead of a page number. An empty `after` returns the first `size` results and the response carries the cursor of the next ones in the `X-Next-Cursor` header, which is absent on the last page. A cursor is only valid with the `order` it was issued for.<br /><br />" +
+                    "The matching rows are not counted unless `total=true` is passed, the response then carries an estimate of their number in the `X-Total-Count` header, refreshed periodically.",
             tags = {"users", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = User.class)), mediaType = "application/json")}),
@@ -62,58 +77,36 @@ public class UserController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/users")
-    public List<User> findAll(@RequestHeader HttpHeaders header,
-                              @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
-                              @RequestParam(required = false) String id, @RequestParam(required = false) String name,
-                              @RequestParam(required = false) String userLink, @RequestParam(required = false) String pictureLink,
-                              @RequestParam(required = false) String order) throws TokenRequiredException, TokenNotValidException, BadRequestParameterField, BadRequestIdParameter {
-        String token = header.getFirst("Authorization");
-        if (token == null) {
-            throw new TokenRequiredException();
-        } else if (tokenRepository.existsById(token)) {
-            Page<User> pageChannels;
-            Pageable paging;
-            if(order!=null){
-                if(order.startsWith("-")){
-                    paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-                }
-                else{
-                    paging = PageRequest.of(page, size, Sort.by(order).ascending());
-                }
-            }else{
-                paging = PageRequest.of(page, size);
-            }
-            int count = 0;
-            if (id != null) count++;
-            if (name != null) count++;
-            if (userLink != null) count++;
-            if (pictureLink != null) count++;
-
-            if (count > 1) {
-                throw new BadRequestParameterField();
-            }
-
-            if (id != null) {
-                try{
-                    Long idL = Long.valueOf(id);
-                    pageChannels = userRepository.findById(idL, paging);
-                }catch(NumberFormatException  e) {
-                    throw new BadRequestIdParameter();
-                }
-            } else if (name != null) {
-                pageChannels = userRepository.findByName(name, paging);
-            } else if (userLink != null) {
-                pageChannels = userRepository.findByUserLinkContaining(userLink, paging);
-            } else if (pictureLink != null) {
-                pageChannels = userRepository.findByPictureLinkContaining(pictureLink, paging);
-            } else {
-                pageChannels = userRepository.findAll(paging);
+    public ResponseEntity<RowStream<UserDto>> findAll(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                              @RequestParam(required = false) String id, @RequestParam(required = false) String name,
+                                              @RequestParam(required = false) String userLink, @RequestParam(required = false) String pictureLink,
+                                              @RequestParam(required = false) String order, @RequestParam(defaultValue = "false") boolean total,
+                                              @RequestParam(required = false) String after) throws BadRequestIdParameter, BadRequestCursor {
+        Long userId = null;
+        if (id != null) {
+            try{
+                userId = Long.valueOf(id);
+            }catch(NumberFormatException  e) {
+                throw new BadRequestIdParameter();
             }
-
-            return pageChannels.getContent();
+        }
+        Specification<User> filter = Filters.all(
+                Filters.equal("id", userId),
+                Filters.equal("name", name),
+                Filters.contains("userLink", userLink),
+                Filters.contains("pictureLink", pictureLink));
+        HttpHeaders headers = totalEstimates.headers(total, TotalEstimates.key("users", id, name, userLink, pictureLink), () -> userRepository.count(filter));
+        Sort sort = KeysetCursor.sort(order);
+        RowStream<User> users;
+        if (after != null) {
+            ScrollPosition position = KeysetCursor.decode(after, order, User.class);
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(User.class, filter, position, size, sort);
+            headers.addAll(KeysetCursor.headers(lastKeys, order));
+            users = streamingQueries.after(User.class, filter, position, lastKeys, size, sort);
         } else {
-            throw new TokenNotValidException();
+            users = streamingQueries.page(User.class, filter, page, size, sort);
         }
+        return ResponseEntity.ok().headers(headers).body(users.map(UserDto::of));
     }
 
     // GET http://localhost:8080/videoMiner/v1/users/{id}
@@ -127,24 +120,17 @@ public class UserController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/users/{id}")
-    public User findById(@PathVariable String id, @RequestHeader HttpHeaders header) throws UserNotFoundException, TokenNotValidException, TokenRequiredException {
-        String token = header.getFirst("Authorization");
-        if (token == null) {
-            throw new TokenRequiredException();
-        } else if (tokenRepository.existsById(token)) {
-            Optional<User> user = userRepository.findById(id);
-            if(!user.isPresent()){
-                throw new UserNotFoundException();
-            }
-            return user.get();
-        } else {
-            throw new TokenNotValidException();
+    public UserDto findById(@PathVariable String id) throws UserNotFoundException {
+        Optional<User> user = userRepository.findById(id);
+        if(!user.isPresent()){
+            throw new UserNotFoundException();
         }
+        return UserDto.of(user.get());
     }
 
     //GET http://localhost:8080/videoMiner/v1/videos/{videoId}/users
     @Operation( summary = "Retrieve the list of users of a Video",
-            description = "Get a list of users associated with the video Id.",
+            description = "Get a list of users associated with the video Id.<br >The list is paged with the `page`, `size` and `order` parameters, or read with a cursor through the `after` parameter as in the list of users.",
             tags = {"users", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = User.class)), mediaType = "application/json")}),
@@ -153,20 +139,20 @@ public class UserController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/videos/{videoId}/users")
-    public List<User> getAllCaptionsByVideo(@PathVariable("videoId") String videoId, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<List<UserDto>> getAllCaptionsByVideo(@PathVariable("videoId") String videoId,
+                                                            @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                            @RequestParam(required = false) String order, @RequestParam(required = false) String after)
+            throws VideoNotFoundException, BadRequestCursor {
+        if (videoRepository.findById(videoId).isEmpty()) {
+            throw new VideoNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Video> video = videoRepository.findById(videoId);
-            if (!video.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            return video.get().getComments().stream().map(Comment::getAuthor).collect(Collectors.toList());
-        } else {
-            throw new TokenNotValidException();
+        Specification<User> filter = UserSpecifications.authorOfVideo(videoId);
+        Sort sort = KeysetCursor.sort(order);
+        if (after != null) {
+            Window<User> window = userRepository.findAfter(filter, KeysetCursor.decode(after, order, User.class), size, sort);
+            return ResponseEntity.ok().headers(KeysetCursor.headers(window, order)).body(Dtos.map(window.getContent(), UserDto::of));
         }
+        return ResponseEntity.ok(Dtos.map(userRepository.findPage(filter, page, size, sort).getContent(), UserDto::of));
     }
 
     // PUT http://localhost:8080/videoMiner/v1/users/{id}
@@ -180,29 +166,22 @@ public class UserController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PutMapping("/users/{id}")
-    public void update(@Valid @RequestBody User updatedUser, @PathVariable String id, @RequestHeader HttpHeaders header) throws UserNotFoundException, TokenNotValidException, TokenRequiredException {
-        String token = header.getFirst("Authorization");
-        if (token == null) {
-            throw new TokenRequiredException();
-        } else if (tokenRepository.existsById(token)) {
-            Optional<User> userData = userRepository.findById(id);
-            if (!userData.isPresent()) {
-                throw new UserNotFoundException();
-            }
-            User _user = userData.get();
-            if(updatedUser.getName()!=null){
-                _user.setName(updatedUser.getName());
-            }
-            if(updatedUser.getUser_link()!=null){
-                _user.setUser_link(updatedUser.getUser_link());
-            }
-            if(updatedUser.getPicture_link()!=null){
-                _user.setPicture_link(updatedUser.getPicture_link());
-            }
-            userRepository.save(_user);
-        } else {
-            throw new TokenNotValidException();
+    public void update(@Valid @RequestBody User updatedUser, @PathVariable String id) throws UserNotFoundException {
+        Optional<User> userData = userRepository.findById(id);
+        if (!userData.isPresent()) {
+            throw new UserNotFoundException();
+        }
+        User _user = userData.get();
+        if(updatedUser.getName()!=null){
+            _user.setName(updatedUser.getName());
         }
+        if(updatedUser.getUser_link()!=null){
+            _user.setUser_link(updatedUser.getUser_link());
+        }
+        if(updatedUser.getPicture_link()!=null){
+            _user.setPicture_link(updatedUser.getPicture_link());
+        }
+        userRepository.save(_user);
     }
 
     // DELETE http://localhost:8080/videoMiner/v1/users/{id}
@@ -216,24 +195,15 @@ public class UserController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/users/{id}")
-    public void delete(@Parameter(description = "Id of the user to be deleted") @PathVariable String id,
-                       @RequestHeader HttpHeaders header) throws TokenRequiredException, TokenNotValidException, UserNotFoundException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Optional<User> userData = userRepository.findById(id);
-            if(!userData.isPresent()) {
-                throw new UserNotFoundException();
-            }
-            User author = userData.get();
-            Comment comment = commentRepository.findByAuthor(author);
-            System.out.println(comment);
-            commentRepository.delete(comment);
-        } else {
-            throw new TokenNotValidException();
+    public void delete(@Parameter(description = "Id of the user to be deleted") @PathVariable String id) throws UserNotFoundException {
+        Optional<User> userData = userRepository.findById(id);
+        if(!userData.isPresent()) {
+            throw new UserNotFoundException();
         }
+        User author = userData.get();
+        Comment comment = commentRepository.findByAuthor(author);
+        System.out.println(comment);
+        commentRepository.delete(comment);
     }
 
 }
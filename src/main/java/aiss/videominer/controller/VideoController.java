@@ -1,32 +1,55 @@
 package aiss.videominer.controller;
 
+import aiss.videominer.dto.Dtos;
+import aiss.videominer.dto.VideoDto;
 import aiss.videominer.exception.*;
 import aiss.videominer.model.Channel;
 import aiss.videominer.model.Video;
 import aiss.videominer.repository.*;
+import aiss.videominer.search.SearchIndex;
+import aiss.videominer.service.ChannelIngestService;
+import aiss.videominer.service.EntityTags;
+import aiss.videominer.service.IngestJob;
+import aiss.videominer.service.IngestJobService;
+import aiss.videominer.service.IngestReport;
+import aiss.videominer.service.KeysetCursor;
+import aiss.videominer.service.RowStream;
+import aiss.videominer.service.StreamingIngestService;
+import aiss.videominer.service.TotalEstimates;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Video", description="Video management API")
+@SecurityRequirement(name = "Authorization")
 @RestController
 @RequestMapping("/videoMiner/v1")
 public class VideoController {
@@ -37,6 +60,9 @@ public class VideoController {
     @Autowired
     VideoRepository videoRepository;
 
+    @Autowired
+    StreamingQueries streamingQueries;
+
     @Autowired
     CaptionRepository captionRepository;
 
@@ -47,15 +73,30 @@ public class VideoController {
     UserRepository userRepository;
 
     @Autowired
-    TokenRepository tokenRepository;
+    ChannelIngestService channelIngestService;
+
+    @Autowired
+    StreamingIngestService streamingIngestService;
+
+    @Autowired
+    IngestJobService ingestJobService;
+
+    @Autowired
+    TotalEstimates totalEstimates;
+
+    @Autowired
+    SearchIndex searchIndex;
 
     // GET http://localhost:8080/videoMiner/v1/videos
     @Operation( summary = "Retrieve a list of videos",
-            description = "Get a list of videos with different options in paging, ordering and filtering. Only one of the filter parameters (`id`, `name`, `description`, `order`) may be present at the same time.<br /><br />" +
-                    "Each filter parameter corresponds to one of the attributes of the Video class. For example, `id` filters videos by their unique identifier, `name` filters videos by their name, `description` filters videos by their description, and `releaseTime` filters videos by the time they were released.<br /><br />" +
+            description = "Get a list of videos with different options in paging, ordering and filtering. The filter parameters (`id`, `name`, `description`, `releaseTime`) can be combined, the results match all of them.<br /><br />" +
+                    "Each filter parameter corresponds to one of the attributes of the Video class. For example, `id` filters videos by their unique identifier, `name` filters videos by their name, `description` filters videos by their description, and `releaseTime` filters videos by the time they were released. A value ending with `*` matches the values starting with it, except for `releaseTime` which takes a time.<br /><br />" +
+                    "Times are ISO-8601 instants such as `2024-05-01T10:00:00Z`, or a day `2024-05-01`, a month `2024-05` or a year `2024` in UTC. `releaseTime` keeps the videos released within that time, `from` the ones released since its start and `to` the ones released up to its end. Ordering by `releaseTime` reads the videos from the index of that column.<br /><br />" +
                     "The parameter `page` indicates the page number of results to retrieve, while the `size` parameter specifies the number of results per page.<br />" +
                     "Pages are zero-indexed, so `page=0` returns the first page of results. If there is no result found the response will return empty.<br /><br />"+
-                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.",
+                    "The `order` parameter specifies the ordering of the results. It accepts the name of the attribute by which you want to order the results. If descending order is desired, prefix the attribute with '-'. For example, 'name' for ascending order and '-name' for descending order.<br /><br />" +
+                    "With the `after` parameter the list is read with a cursor instead of a page number. An empty `after` returns the first `size` results and the response carries the cursor of the next ones in the `X-Next-Cursor` header, which is absent on the last page. A cursor is only valid with the `order` it was issued for.<br /><br />" +
+                    "The matching rows are not counted unless `total=true` is passed, the response then carries an estimate of their number in the `X-Total-Count` header, refreshed periodically.",
             tags = {"videos", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Video.class)), mediaType = "application/json")}),
@@ -64,85 +105,78 @@ public class VideoController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/videos")
-    public List<Video> findAll(@RequestHeader HttpHeaders header,
-                               @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
-                               @RequestParam(required = false) String id, @RequestParam(required = false) String name,
-                               @RequestParam(required = false) String description, @RequestParam(required = false) String releaseTime,
-                               @RequestParam(required = false) String order) throws TokenRequiredException, TokenNotValidException, BadRequestParameterField {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
-        }
-        else if(tokenRepository.existsById(token)) {
-            Page<Video> pageChannels;
-            Pageable paging;
-            if(order!=null){
-                if(order.startsWith("-")){
-                    paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-                }
-                else{
-                    paging = PageRequest.of(page, size, Sort.by(order).ascending());
-                }
-            }else{
-                paging = PageRequest.of(page, size);
-            }
-            int count = 0;
-            if (id != null) count++;
-            if (name != null) count++;
-            if (description != null) count++;
-            if (releaseTime != null) count++;
-
-            if (count > 1) {
-                throw new BadRequestParameterField();
-            }
-
-            if (id != null) {
-                pageChannels = videoRepository.findById(id, paging);
-            } else if (name != null) {
-                pageChannels = videoRepository.findByName(name, paging);
-            } else if (description != null) {
-                pageChannels = videoRepository.findByDescriptionContaining(description, paging);
-            } else if (releaseTime != null) {
-                pageChannels = videoRepository.findByReleaseTimeContaining(releaseTime, paging);
-            } else {
-                pageChannels = videoRepository.findAll(paging);
-            }
-            return pageChannels.getContent();
+    public ResponseEntity<RowStream<VideoDto>> findAll(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                               @RequestParam(required = false) String id, @RequestParam(required = false) String name,
+                                               @RequestParam(required = false) String description, @RequestParam(required = false) String releaseTime,
+                                               @RequestParam(required = false) String from, @RequestParam(required = false) String to,
+                                               @RequestParam(required = false) String order, @RequestParam(defaultValue = "false") boolean total,
+                                               @RequestParam(required = false) String after) throws BadRequestCursor, BadRequestTimestamp {
+        Specification<Video> filter = Filters.all(
+                Filters.equal("id", id),
+                Filters.equal("name", name),
+                Filters.contains("description", description),
+                Filters.within("releaseTime", TimePeriod.parse(releaseTime)),
+                Filters.from("releaseTime", TimePeriod.parse(from)),
+                Filters.to("releaseTime", TimePeriod.parse(to)));
+        HttpHeaders headers = totalEstimates.headers(total, TotalEstimates.key("videos", id, name, description, releaseTime, from, to), () -> videoRepository.count(filter));
+        Sort sort = KeysetCursor.sort(order);
+        RowStream<Video> videos;
+        if (after != null) {
+            ScrollPosition position = KeysetCursor.decode(after, order, Video.class);
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(Video.class, filter, position, size, sort);
+            headers.addAll(KeysetCursor.headers(lastKeys, order));
+            videos = streamingQueries.after(Video.class, filter, position, lastKeys, size, sort);
         } else {
-            throw new TokenNotValidException();
+            videos = streamingQueries.page(Video.class, filter, page, size, sort);
         }
-}
+        return ResponseEntity.ok().headers(headers).body(videos.map(VideoDto::of));
+    }
+
+    // GET http://localhost:8080/videoMiner/v1/videos/search?q=...
+    @Operation( summary = "Search videos",
+            description = "Search videos by their name and description. The `q` parameter uses the Lucene query syntax: every word must be present, words between quotes match a phrase, `word*` matches a prefix and `OR`, `NOT` and parentheses combine terms.<br /><br />" +
+                    "Results are ordered by relevance and paged with `page` and `size`. The `X-Total-Count` header gives the number of matches.",
+            tags = {"videos", "get"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Video.class)), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping("/videos/search")
+    public ResponseEntity<List<VideoDto>> search(@RequestParam String q, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) throws BadRequestSearchQuery {
+        SearchIndex.Hits hits = searchIndex.search(SearchIndex.Type.VIDEO, q, page, size);
+        List<Video> videos = SearchIndex.ranked(hits.ids(), videoRepository.findAllById(hits.ids()), Video::getId);
+        return ResponseEntity.ok().header(TotalEstimates.TOTAL_COUNT_HEADER, String.valueOf(hits.total())).body(Dtos.map(videos, VideoDto::of));
+    }
 
     // GET http://localhost:8080/videoMiner/v1/videos/{id}
     @Operation( summary = "Retrieve a Video by Id",
-            description = "Get a Video object by specifying its Id.",
+            description = "Get a Video object by specifying its Id.<br >The response carries an ETag and a Last-Modified header, a request with a matching `If-None-Match` or a later `If-Modified-Since` gets a 304 without body.",
             tags = {"videos", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = Video.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/videos/{id}")
-    public Video findById(@PathVariable String id, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<VideoDto> findById(@PathVariable String id, WebRequest request) throws VideoNotFoundException {
+        Optional<Video> video = videoRepository.findById(id);
+        if(!video.isPresent()){
+            throw new VideoNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Video> video = videoRepository.findById(id);
-            if(!video.isPresent()){
-                throw new VideoNotFoundException();
-            }
-            return video.get();
-        } else {
-            throw new TokenNotValidException();
+        Instant lastModified = video.get().getLastModified();
+        if (request.checkNotModified(EntityTags.of(lastModified), lastModified.toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
         }
+        return ResponseEntity.ok(VideoDto.of(video.get()));
     }
 
     // GET http://localhost:8080/videoMiner/v1/channels/{channelId}/videos
     @Operation( summary = "Retrieve the list of videos of a Channel",
-            description = "Get a list of videos associated with the channel Id.",
+            description = "Get a list of videos associated with the channel Id.<br >The list is paged with the `page`, `size` and `order` parameters, or read with a cursor through the `after` parameter as in the list of videos.",
             tags = {"videos", "get"})
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema=@Schema(implementation = Video.class)), mediaType = "application/json")}),
@@ -151,53 +185,90 @@ public class VideoController {
     })
     @ResponseStatus(HttpStatus.OK)
     @GetMapping("/channels/{channelId}/videos")
-    public List<Video> getAllVideosByChannel(@PathVariable("channelId") String channelId, @RequestHeader HttpHeaders header) throws ChannelNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<List<VideoDto>> getAllVideosByChannel(@PathVariable("channelId") String channelId,
+                                                             @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+                                                             @RequestParam(required = false) String order, @RequestParam(required = false) String after)
+            throws ChannelNotFoundException, BadRequestCursor {
+        if (channelRepository.findById(channelId).isEmpty()) {
+            throw new ChannelNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Channel> channel = channelRepository.findById(channelId);
-            if (!channel.isPresent()) {
-                throw new ChannelNotFoundException();
-            }
-            return new ArrayList<>(channel.get().getVideos());
-        } else {
-            throw new TokenNotValidException();
+        Sort sort = KeysetCursor.sort(order);
+        if (after != null) {
+            Window<Video> window = videoRepository.findByChannelId(channelId, KeysetCursor.decode(after, order, Video.class), size, sort);
+            return ResponseEntity.ok().headers(KeysetCursor.headers(window, order)).body(Dtos.map(window.getContent(), VideoDto::of));
         }
+        return ResponseEntity.ok(Dtos.map(videoRepository.findByChannelId(channelId, PageRequest.of(page, size, sort)).getContent(), VideoDto::of));
     }
 
     // POST http://localhost:8080/videoMiner/v1/channels/{channelId}/videos
     @Operation( summary = "Insert a Video into the list of videos of a Channel",
-            description = "Add a Video object into the list of videos associated with the channel Id.<br >The Video data is passed in the body of the request in JSON format.",
+            description = "Add a Video object into the list of videos associated with the channel Id.<br >The Video data is passed in the body of the request in JSON format.<br >The response is the created Video, whose URL is given in the Location header.",
             tags = {"videos", "post"})
     @ApiResponses({
             @ApiResponse(responseCode = "201", content = {@Content(schema=@Schema(implementation = Video.class), mediaType = "application/json")}),
             @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
             @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "409", content = {@Content(schema=@Schema())})
     })
-    @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/channels/{channelId}/videos")
-    public List<Video> create(@PathVariable("channelId") String channelId, @Valid @RequestBody Video videoRequest, @RequestHeader HttpHeaders header) throws ChannelNotFoundException, TokenRequiredException, TokenNotValidException, IdCannotBeNull {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public ResponseEntity<VideoDto> create(@PathVariable("channelId") String channelId, @Valid @RequestBody Video videoRequest) throws ChannelNotFoundException, IdCannotBeNull, IdAlreadyExists {
+        if(videoRequest.getId() == null){
+            throw new IdCannotBeNull();
         }
-        else if(tokenRepository.existsById(token)) {
-            if(videoRequest.getId() == null){
-                throw new IdCannotBeNull();
-            }
-            Optional<Channel> channel = channelRepository.findById(channelId);
-            if (!channel.isPresent()) {
-                throw new ChannelNotFoundException();
-            }
-            channel.get().getVideos().add(videoRequest);
-            channelRepository.save(channel.get());
-            return channel.get().getVideos();
-        } else {
-            throw new TokenNotValidException();
+        if (channelRepository.findById(channelId).isEmpty()) {
+            throw new ChannelNotFoundException();
+        }
+        try {
+            Video video = channelIngestService.addVideo(channelId, videoRequest);
+            return ResponseEntity.created(URI.create("/videoMiner/v1/videos/" + video.getId())).body(VideoDto.of(video));
+        } catch (DataIntegrityViolationException e) {
+            throw new IdAlreadyExists();
+        }
+    }
+
+    // POST http://localhost:8080/videoMiner/v1/channels/{channelId}/videos?async=true
+    @Operation( summary = "Insert a Video into the list of videos of a Channel asynchronously",
+            description = "Queue a Video object to be added in the background to the list of videos associated with the channel Id.<br >The Video data is passed in the body of the request in JSON format.<br >" +
+                    "The response is the ingest job, whose status can be followed at the URL of the Location header. When the queue is full the request is refused with 503 and a Retry-After header.",
+            tags = {"videos", "post"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema=@Schema(implementation = IngestJob.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "503", content = {@Content(schema=@Schema())})
+    })
+    @PostMapping(value = "/channels/{channelId}/videos", params = "async=true")
+    public ResponseEntity<IngestJob> createAsync(@PathVariable("channelId") String channelId, @Valid @RequestBody Video videoRequest) throws ChannelNotFoundException, IdCannotBeNull {
+        if(videoRequest.getId() == null){
+            throw new IdCannotBeNull();
+        }
+        if (channelRepository.findById(channelId).isEmpty()) {
+            throw new ChannelNotFoundException();
         }
+        IngestJob job = ingestJobService.submit(channelId, videoRequest);
+        return ResponseEntity.accepted().location(URI.create("/videoMiner/v1/ingest/jobs/" + job.getId())).body(job);
+    }
+
+    // POST http://localhost:8080/videoMiner/v1/channels/{channelId}/videos/stream
+    @Operation( summary = "Insert a stream of Videos into the list of videos of a Channel",
+            description = "Add many Video objects to the list of videos associated with the channel Id, reading them one at a time.<br >" +
+                    "The body is either NDJSON (`application/x-ndjson`, one Video per line), a JSON array of videos, or a sequence or array of videos in CBOR (`application/cbor`) or Smile (`application/x-jackson-smile`). The videos are stored in chunks while the body is read, so the size of the upload is not limited by the memory of the server.<br >" +
+                    "Invalid videos do not stop the stream: the response reports how many videos were accepted and rejected, with the index and the reason of each rejection.",
+            tags = {"videos", "post"})
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema=@Schema(implementation = IngestReport.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "403", content = {@Content(schema=@Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema=@Schema())})
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @PostMapping(value = "/channels/{channelId}/videos/stream", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, "application/x-jackson-smile"})
+    public IngestReport createStream(@PathVariable("channelId") String channelId, @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) throws ChannelNotFoundException, IOException {
+        if (channelRepository.findById(channelId).isEmpty()) {
+            throw new ChannelNotFoundException();
+        }
+        return streamingIngestService.ingestVideos(channelId, contentType, body);
     }
 
     // PUT http://localhost:8080/videoMiner/v1/videos/{id}
@@ -212,27 +283,19 @@ public class VideoController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @PutMapping("/videos/{id}")
-    public void update(@Valid @RequestBody Video updatedVideo, @PathVariable String id, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void update(@Valid @RequestBody Video updatedVideo, @PathVariable String id) throws VideoNotFoundException {
+        Optional<Video> videoData = videoRepository.findById(id);
+        if (!videoData.isPresent()) {
+            throw new VideoNotFoundException();
         }
-        else if(tokenRepository.existsById(token)) {
-            Optional<Video> videoData = videoRepository.findById(id);
-            if (!videoData.isPresent()) {
-                throw new VideoNotFoundException();
-            }
-            Video _video = videoData.get();
-            if(updatedVideo.getName() != null){
-                _video.setName(updatedVideo.getName());
-            }
-            if(updatedVideo.getDescription() != null){
-                _video.setDescription(updatedVideo.getDescription());
-            }
-            videoRepository.save(_video);
-        } else {
-            throw new TokenNotValidException();
+        Video _video = videoData.get();
+        if(updatedVideo.getName() != null){
+            _video.setName(updatedVideo.getName());
+        }
+        if(updatedVideo.getDescription() != null){
+            _video.setDescription(updatedVideo.getDescription());
         }
+        videoRepository.save(_video);
     }
 
     // DELETE http://localhost:8080/videoMiner/v1/videos/{id}
@@ -246,20 +309,12 @@ public class VideoController {
     })
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/videos/{id}")
-    public void delete(@PathVariable String id, @RequestHeader HttpHeaders header) throws VideoNotFoundException, TokenRequiredException, TokenNotValidException {
-        String token = header.getFirst("Authorization");
-        if (token==null) {
-            throw new TokenRequiredException();
+    public void delete(@PathVariable String id) throws VideoNotFoundException {
+        if(videoRepository.existsById(id)) {
+            videoRepository.deleteById(id);
         }
-        else if(tokenRepository.existsById(token)) {
-            if(videoRepository.existsById(id)) {
-                videoRepository.deleteById(id);
-            }
-            else {
-                throw new VideoNotFoundException();
-            }
-        } else {
-            throw new TokenNotValidException();
+        else {
+            throw new VideoNotFoundException();
         }
     }
 }
@@ -0,0 +1,10 @@
+package aiss.videominer.dto;
+
+import aiss.videominer.model.Caption;
+
+public record CaptionDto(String id, String name, String language) {
+
+    public static CaptionDto of(Caption caption) {
+        return new CaptionDto(caption.getId(), caption.getName(), caption.getLanguage());
+    }
+}
@@ -0,0 +1,21 @@
+package aiss.videominer.dto;
+
+import aiss.videominer.model.Channel;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.time.Instant;
+import java.util.List;
+
+@JsonFilter(Channel.FILTER)
+public record ChannelDto(String id, String name, String description, Instant createdTime, List<VideoDto> videos) {
+
+    public static ChannelDto of(Channel channel) {
+        return of(channel, true, true, true);
+    }
+
+    // The associations left out are not read, they are null and filtered out of the response
+    public static ChannelDto of(Channel channel, boolean videos, boolean comments, boolean captions) {
+        return new ChannelDto(channel.getId(), channel.getName(), channel.getDescription(), channel.getCreatedTime(),
+                videos ? Dtos.map(channel.getVideos(), video -> VideoDto.of(video, comments, captions)) : null);
+    }
+}
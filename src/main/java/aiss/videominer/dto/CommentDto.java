@@ -0,0 +1,12 @@
+package aiss.videominer.dto;
+
+import aiss.videominer.model.Comment;
+
+import java.time.Instant;
+
+public record CommentDto(String id, String text, Instant createdOn, UserDto author) {
+
+    public static CommentDto of(Comment comment) {
+        return new CommentDto(comment.getId(), comment.getText(), comment.getCreatedOn(), UserDto.of(comment.getAuthor()));
+    }
+}
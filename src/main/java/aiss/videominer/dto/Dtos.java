@@ -0,0 +1,26 @@
+package aiss.videominer.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * The bodies of the responses are built from these records instead of the entities. They are copied while the
+ * persistence context is open, every lazy association they hold being read there, so that writing them never loads
+ * anything, and their serializers are generated by the Blackbird module, see JacksonConfig.
+ */
+public final class Dtos {
+
+    private Dtos() {}
+
+    public static <T, R> List<R> map(List<T> rows, Function<? super T, ? extends R> mapper) {
+        if (rows == null) {
+            return null;
+        }
+        List<R> mapped = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            mapped.add(mapper.apply(row));
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,18 @@
+package aiss.videominer.dto;
+
+import aiss.videominer.model.User;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// Same properties, in the same order, as the User entity
+@JsonPropertyOrder({"user_link", "picture_link", "id", "name"})
+public record UserDto(@JsonProperty("user_link") String userLink, @JsonProperty("picture_link") String pictureLink,
+                      Long id, String name) {
+
+    public static UserDto of(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserDto(user.getUser_link(), user.getPicture_link(), user.getId(), user.getName());
+    }
+}
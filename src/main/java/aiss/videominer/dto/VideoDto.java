@@ -0,0 +1,23 @@
+package aiss.videominer.dto;
+
+import aiss.videominer.model.Video;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.time.Instant;
+import java.util.List;
+
+@JsonFilter(Video.FILTER)
+public record VideoDto(String id, String name, String description, Instant releaseTime, List<CommentDto> comments,
+                       List<CaptionDto> captions) {
+
+    public static VideoDto of(Video video) {
+        return of(video, true, true);
+    }
+
+    // The associations left out are not read, they are null and filtered out of the response
+    public static VideoDto of(Video video, boolean comments, boolean captions) {
+        return new VideoDto(video.getId(), video.getName(), video.getDescription(), video.getReleaseTime(),
+                comments ? Dtos.map(video.getComments(), CommentDto::of) : null,
+                captions ? Dtos.map(video.getCaptions(), CaptionDto::of) : null);
+    }
+}
@@ -0,0 +1,8 @@
+package aiss.videominer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.BAD_REQUEST, reason = "Unknown value in the fields or expand parameters.")
+public class BadRequestFetchPlan extends Exception{
+}
@@ -1,8 +0,0 @@
-package aiss.videominer.exception;
-
-import org.springframework.http.HttpStatus;
-import org.springframework.web.bind.annotation.ResponseStatus;
-
-@ResponseStatus(code= HttpStatus.BAD_REQUEST, reason = "Just one search parameter must be provided for filtering.")
-public class BadRequestParameterField extends Exception{
-}
@@ -0,0 +1,8 @@
+package aiss.videominer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.BAD_REQUEST, reason = "The search query is not valid.")
+public class BadRequestSearchQuery extends Exception{
+}
@@ -0,0 +1,8 @@
+package aiss.videominer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.BAD_REQUEST, reason = "The time must be an ISO-8601 instant, date, year-month or year.")
+public class BadRequestTimestamp extends Exception{
+}
@@ -0,0 +1,25 @@
+package aiss.videominer.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+// Unlike the @ResponseStatus exceptions, a ResponseStatusException can carry the Retry-After header
+public class IngestQueueFullException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public IngestQueueFullException(Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "The ingest queue is full, retry later");
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter.toSeconds()));
+        return headers;
+    }
+}
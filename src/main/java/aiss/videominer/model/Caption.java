@@ -1,17 +1,32 @@
 package aiss.videominer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 /**
  * @author Juan C. Alonso
  */
 @Entity
 @Table(name = "Caption")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Caption.CACHE_REGION)
 public class Caption {
 
+    // Region of the second-level cache, see SecondLevelCacheConfig
+    public static final String CACHE_REGION = "caption";
+
     @Id
     @JsonProperty("id")
     private String id;
@@ -22,6 +37,17 @@ public class Caption {
     @JsonProperty("language")
     private String language;
 
+    // Video this caption belongs to, mapped on this side like Video.channelId
+    @JsonIgnore
+    @Column(name = "videoId")
+    private String videoId;
+
+    // Time of the last change of the row or of a child included in its JSON, see LastModifiedListener. It is the
+    // validator of the ETag and Last-Modified headers
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant lastModified;
+
     public Caption(String id, String language, String name) {
         this.id = id;
         this.language = language;
@@ -54,6 +80,23 @@ public class Caption {
         this.language = language;
     }
 
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    // Marks the row as changed, the flush writes a new lastModified
+    public void touch() {
+        lastModified = null;
+    }
+
     @Override
     public String toString() {
         return "Caption{" +
@@ -1,11 +1,18 @@
 package aiss.videominer.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,9 +21,20 @@ import java.util.List;
  */
 @Entity
 @Table(name = "Channel")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Channel.CACHE_REGION)
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonFilter(Channel.FILTER)
 public class Channel {
 
+    public static final String FILTER = "channel";
+
+    // Regions of the second-level cache, see SecondLevelCacheConfig
+    public static final String CACHE_REGION = "channel";
+
+    public static final String VIDEOS_CACHE_REGION = "channel.videos";
+
     @Id
     @JsonProperty("id")
     private String id;
@@ -30,20 +48,27 @@ public class Channel {
     private String description;
 
     @JsonProperty("createdTime")
-    @NotEmpty(message = "Channel creation time cannot be empty")
-    private String createdTime;
+    @NotNull(message = "Channel creation time cannot be empty")
+    private Instant createdTime;
 
     @JsonProperty("videos")
     @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "channelId")
+    @JoinColumn(name = "channelId", insertable = false, updatable = false)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Channel.VIDEOS_CACHE_REGION)
     @NotNull(message = "Channel videos cannot be null")
     private List<Video> videos;
 
+    // Time of the last change of the row or of a child included in its JSON, see LastModifiedListener. It is the
+    // validator of the ETag and Last-Modified headers
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant lastModified;
+
     public Channel() {
         this.videos = new ArrayList<>();
     }
 
-    public Channel(String id, String name, String description, String createdTime) {
+    public Channel(String id, String name, String description, Instant createdTime) {
         this.id = id;
         this.name = name;
         this.description = description;
@@ -75,11 +100,11 @@ public class Channel {
         this.description = description;
     }
 
-    public String getCreatedTime() {
+    public Instant getCreatedTime() {
         return createdTime;
     }
 
-    public void setCreatedTime(String createdTime) {
+    public void setCreatedTime(Instant createdTime) {
         this.createdTime = createdTime;
     }
 
@@ -91,6 +116,15 @@ public class Channel {
         this.videos = videos;
     }
 
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    // Marks the row as changed, the flush writes a new lastModified
+    public void touch() {
+        lastModified = null;
+    }
+
     @Override
     public String toString() {
         return "Channel{" +
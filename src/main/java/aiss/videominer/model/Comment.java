@@ -1,14 +1,20 @@
 package aiss.videominer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 /**
  * @author Juan C. Alonso
  */
 @Entity
 @Table(name = "Comment")
+@DynamicUpdate
 public class Comment {
 
     @Id
@@ -20,16 +26,27 @@ public class Comment {
     private String text;
 
     @JsonProperty("createdOn")
-    private String createdOn;
+    private Instant createdOn;
+
+    // Video this comment belongs to, mapped on this side like Video.channelId
+    @JsonIgnore
+    @Column(name = "videoId")
+    private String videoId;
 
     @JsonProperty("author")
     @OneToOne(cascade = CascadeType.ALL)
     @NotNull(message = "Comment author cannot be null")
     private User author;
 
+    // Time of the last change of the row or of a child included in its JSON, see LastModifiedListener. It is the
+    // validator of the ETag and Last-Modified headers
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant lastModified;
+
     public Comment() {}
 
-    public Comment(String id, String text ,String createdOn, User author) {
+    public Comment(String id, String text , Instant createdOn, User author) {
         this.id = id;
         this.text = text;
         this.createdOn = createdOn;
@@ -52,14 +69,22 @@ public class Comment {
         this.text = text;
     }
 
-    public String getCreatedOn() {
+    public Instant getCreatedOn() {
         return createdOn;
     }
 
-    public void setCreatedOn(String createdOn) {
+    public void setCreatedOn(Instant createdOn) {
         this.createdOn = createdOn;
     }
 
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(String videoId) {
+        this.videoId = videoId;
+    }
+
     public User getAuthor() {
         return author;
     }
@@ -68,6 +93,15 @@ public class Comment {
         this.author = author;
     }
 
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    // Marks the row as changed, the flush writes a new lastModified
+    public void touch() {
+        lastModified = null;
+    }
+
     @Override
     public String toString() {
         return "Comment{" +
@@ -1,9 +1,13 @@
 package aiss.videominer.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+import java.time.Instant;
 
 @Entity
 @Table(name = "Token")
@@ -13,6 +17,12 @@ public class Token {
     @JsonProperty("id")
     private String id;
 
+    // Only set for signed tokens, which are not stored
+    @Transient
+    @JsonProperty(value = "expiresAt", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant expiresAt;
+
     public String getId() {
         return id;
     }
@@ -20,4 +30,12 @@ public class Token {
     public void setId(String id) {
         this.id = id;
     }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
 }
@@ -15,10 +15,12 @@ public class User {
     * User (instead of many-to-one). This causes an exception if we try to add a Comment to the DataBase that has been
     * created by a User that already has a Comment in a previously stored Video. To avoid this exception, we automatically
     * assign an id to each new User with AutoIncrement.
+    * The ids are taken from vmuser_seq in blocks of its increment, so that a batch of users reads the sequence once.
      */
     @Id
     @JsonProperty("id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vmuser_seq")
+    @SequenceGenerator(name = "vmuser_seq", sequenceName = "vmuser_seq", allocationSize = 50)
     private Long id;
 
     @JsonProperty("name")
@@ -1,10 +1,17 @@
 package aiss.videominer.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,8 +20,19 @@ import java.util.List;
  */
 @Entity
 @Table(name = "Video")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Video.CACHE_REGION)
+@JsonFilter(Video.FILTER)
 public class Video {
 
+    public static final String FILTER = "video";
+
+    // Regions of the second-level cache, see SecondLevelCacheConfig. The comments are written too often to be cached
+    public static final String CACHE_REGION = "video";
+
+    public static final String CAPTIONS_CACHE_REGION = "video.captions";
+
     @Id
     @JsonProperty("id")
     private String id;
@@ -28,24 +46,36 @@ public class Video {
     private String description;
 
     @JsonProperty("releaseTime")
-    @NotEmpty(message = "Video release time cannot be empty")
-    private String releaseTime;
+    @NotNull(message = "Video release time cannot be empty")
+    private Instant releaseTime;
+
+    // Owned by the Video side so that it is written in the same INSERT, the Channel videos list is read-only
+    @JsonIgnore
+    @Column(name = "channelId")
+    private String channelId;
 
     @JsonProperty("comments")
     @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "videoId")
+    @JoinColumn(name = "videoId", insertable = false, updatable = false)
     @NotNull(message = "Video comments cannot be null")
     private List<Comment> comments;
 
     @JsonProperty("captions")
     @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "videoId")
+    @JoinColumn(name = "videoId", insertable = false, updatable = false)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Video.CAPTIONS_CACHE_REGION)
     @NotNull(message = "Video captions cannot be null")
     private List<Caption> captions;
 
+    // Time of the last change of the row or of a child included in its JSON, see LastModifiedListener. It is the
+    // validator of the ETag and Last-Modified headers
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant lastModified;
+
     public Video() {}
 
-    public Video(String id, String name, String description, String releaseTime) {
+    public Video(String id, String name, String description, Instant releaseTime) {
         this.id = id;
         this.name = name;
         this.description = description;
@@ -78,14 +108,22 @@ public class Video {
         this.description = description;
     }
 
-    public String getReleaseTime() {
+    public Instant getReleaseTime() {
         return releaseTime;
     }
 
-    public void setReleaseTime(String releaseTime) {
+    public void setReleaseTime(Instant releaseTime) {
         this.releaseTime = releaseTime;
     }
 
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(String channelId) {
+        this.channelId = channelId;
+    }
+
     public List<Comment> getComments() {
         return comments;
     }
@@ -102,6 +140,15 @@ public class Video {
         this.captions = captions;
     }
 
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    // Marks the row as changed, the flush writes a new lastModified
+    public void touch() {
+        lastModified = null;
+    }
+
     @Override
     public String toString() {
         return "Video{" +
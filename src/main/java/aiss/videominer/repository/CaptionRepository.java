@@ -1,14 +1,40 @@
 package aiss.videominer.repository;
 
 import aiss.videominer.model.Caption;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
-public interface CaptionRepository extends JpaRepository<Caption, String> {
-    Page<Caption> findByName(String name, Pageable pageable);
-    Page<Caption> findById(String name, Pageable pageable);
-    Page<Caption> findByLanguage(String name, Pageable pageable);
+public interface CaptionRepository extends JpaRepository<Caption, String>, FilteredRepository<Caption> {
+    List<Caption> findByVideoIdIn(Collection<String> videoIds);
+    boolean existsByIdIn(Collection<String> ids);
+    // Pages of a sub-resource are kept in the query cache until a write to the table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<Caption> findByVideoId(String videoId, Pageable pageable);
+    default Window<Caption> findByVideoId(String videoId, ScrollPosition position, int size, Sort sort) {
+        return findAfter((root, query, cb) -> cb.equal(root.get("videoId"), videoId), position, size, sort);
+    }
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select c from Caption c, Video v where v.id = c.videoId and v.channelId is not null order by v.channelId, c.videoId, c.id")
+    Stream<Caption> streamForExport();
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select c from Caption c, Video v where v.id = c.videoId and v.channelId = :channelId order by c.videoId, c.id")
+    Stream<Caption> streamForExport(String channelId);
 }
@@ -1,17 +1,21 @@
 package aiss.videominer.repository;
 
 import aiss.videominer.model.Channel;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
-@Repository
-public interface ChannelRepository extends JpaRepository<Channel, String> {
-
-    Page<Channel> findByIdContaining(String id, Pageable pageable);
-    Page<Channel> findByNameContaining(String name, Pageable pageable);
-    Page<Channel> findByDescriptionContaining(String description, Pageable pageable);
-    Page<Channel> findByCreatedTimeContaining(String createdTime, Pageable pageable);
+import java.util.stream.Stream;
 
+@Repository
+public interface ChannelRepository extends JpaRepository<Channel, String>, FilteredRepository<Channel> {
+    // Rows of GET /export, read once and in the order of the other export queries, without going through the caches
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select c from Channel c order by c.id")
+    Stream<Channel> streamForExport();
 }
@@ -0,0 +1,108 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Video;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/*
+ * The videos of a channel and the captions of a video are mapped on the child side, by their channelId and videoId
+ * columns, so Hibernate does not know that a cached Channel.videos or Video.captions collection changes when a child
+ * is inserted, deleted or moved to another parent. This listener evicts the collections of the parents involved once
+ * the transaction commits, the next read loads them again.
+ */
+@Component
+public class CollectionCacheEvictionListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final String CHANNEL_VIDEOS = Channel.class.getName() + ".videos";
+
+    private static final String VIDEO_CAPTIONS = Video.class.getName() + ".captions";
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private org.hibernate.Cache cache;
+
+    @PostConstruct
+    void register() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        cache = sessionFactory.getCache();
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        evictParent(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        evictParent(event.getEntity());
+    }
+
+    // The collections only hold the ids of the children, they change when a child is moved to another parent
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (!(entity instanceof Video) && !(entity instanceof Caption)) {
+            return;
+        }
+        String property = entity instanceof Video ? "channelId" : "videoId";
+        Object previous = event.getOldState() == null ? null : event.getOldState()[event.getPersister().getPropertyIndex(property)];
+        Object current = event.getState()[event.getPersister().getPropertyIndex(property)];
+        if (event.getOldState() == null || !Objects.equals(previous, current)) {
+            evict(entity, previous);
+            evictParent(entity);
+        }
+    }
+
+    private void evict(Object entity, Object parentId) {
+        if (parentId != null) {
+            cache.evictCollectionData(entity instanceof Video ? CHANNEL_VIDEOS : VIDEO_CAPTIONS, parentId);
+        }
+    }
+
+    private void evictParent(Object entity) {
+        if (entity instanceof Video video) {
+            evict(video, video.getChannelId());
+        } else if (entity instanceof Caption caption) {
+            evict(caption, caption.getVideoId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Video.class || type == Caption.class;
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+}
@@ -2,16 +2,43 @@ package aiss.videominer.repository;
 
 import aiss.videominer.model.Comment;
 import aiss.videominer.model.User;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
-public interface CommentRepository extends JpaRepository<Comment, String> {
-    Page<Comment> findById(String id, Pageable pageable);
-    Page<Comment> findByCreatedOnContaining(String createdOn, Pageable pageable);
-    Page<Comment> findByTextContaining(String text, Pageable pageable);
+public interface CommentRepository extends JpaRepository<Comment, String>, FilteredRepository<Comment> {
+    Slice<Comment> findByVideoId(String videoId, Pageable pageable);
+    default Window<Comment> findByVideoId(String videoId, ScrollPosition position, int size, Sort sort) {
+        return findAfter((root, query, cb) -> cb.equal(root.get("videoId"), videoId), position, size, sort);
+    }
     Comment findByAuthor(User author);
-
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findByVideoIdIn(Collection<String> videoIds);
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findByIdIn(Collection<String> ids);
+    boolean existsByIdIn(Collection<String> ids);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select c from Comment c join fetch c.author, Video v where v.id = c.videoId and v.channelId is not null order by v.channelId, c.videoId, c.id")
+    Stream<Comment> streamForExport();
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select c from Comment c join fetch c.author, Video v where v.id = c.videoId and v.channelId = :channelId order by c.videoId, c.id")
+    Stream<Comment> streamForExport(String channelId);
 }
@@ -0,0 +1,41 @@
+package aiss.videominer.repository;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.util.DirectFieldAccessFallbackBeanWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * List queries of the endpoints that accept several filters at once. The filters are combined into one
+ * Specification, so each page is a single SELECT that reads size+1 rows to know whether there is a next one.
+ */
+@NoRepositoryBean
+public interface FilteredRepository<T> extends JpaSpecificationExecutor<T> {
+
+    default Window<T> findPage(Specification<T> spec, int page, int size, Sort sort) {
+        return findBy(spec, query -> query.sortBy(sort).limit(size).scroll(ScrollPosition.offset((long) page * size)));
+    }
+
+    // The rows after the keyset position, whose sort keys may be null, see Filters.after
+    default Window<T> findAfter(Specification<T> spec, ScrollPosition position, int size, Sort sort) {
+        Specification<T> seek = Specification.where(spec).and(Filters.after((KeysetScrollPosition) position, sort));
+        List<T> rows = findBy(seek, query -> query.sortBy(sort).limit(size + 1).all());
+        List<T> page = rows.subList(0, Math.min(size, rows.size()));
+        return Window.from(page, i -> ScrollPosition.forward(keys(page.get(i), sort)), rows.size() > size);
+    }
+
+    private static Map<String, Object> keys(Object row, Sort sort) {
+        DirectFieldAccessFallbackBeanWrapper wrapper = new DirectFieldAccessFallbackBeanWrapper(row);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        sort.forEach(order -> keys.put(order.getProperty(), wrapper.getPropertyValue(order.getProperty())));
+        return keys;
+    }
+}
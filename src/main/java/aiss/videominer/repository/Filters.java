@@ -0,0 +1,120 @@
+package aiss.videominer.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Predicates of the filter parameters. A value ending with * is always a prefix match, which can use the index of the
+ * column, otherwise the attribute is compared for equality or searched anywhere as the parameter always did.
+ */
+public final class Filters {
+
+    private Filters() {}
+
+    public static <T> Specification<T> equal(String attribute, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String text && text.endsWith("*")) {
+            return startsWith(attribute, text);
+        }
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    public static <T> Specification<T> contains(String attribute, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.endsWith("*")) {
+            return startsWith(attribute, value);
+        }
+        return (root, query, cb) -> cb.like(root.get(attribute), "%" + escape(value) + "%", '\\');
+    }
+
+    // Time ranges are compared on the typed column, so that they are read from its index
+    public static <T> Specification<T> within(String attribute, TimePeriod period) {
+        if (period == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.<Instant>get(attribute), period.start()),
+                cb.lessThan(root.<Instant>get(attribute), period.end()));
+    }
+
+    // From the start of the period included
+    public static <T> Specification<T> from(String attribute, TimePeriod period) {
+        if (period == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.<Instant>get(attribute), period.start());
+    }
+
+    // Up to the end of the period included, to=2024 keeps the whole year
+    public static <T> Specification<T> to(String attribute, TimePeriod period) {
+        if (period == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThan(root.<Instant>get(attribute), period.end());
+    }
+
+    // Every filter that was given must match, absent ones are left out
+    @SafeVarargs
+    public static <T> Specification<T> all(Specification<T>... filters) {
+        return Specification.allOf(Arrays.stream(filters).filter(Objects::nonNull).toList());
+    }
+
+    /*
+     * The rows that follow the sort keys of the position, for the cursors of the list endpoints. The keys other than the
+     * id may be null: H2 sorts the nulls as lower than any value, first in ascending order and last in descending
+     * order, and the predicates follow the same order. They never evaluate to unknown on a null column, so that their
+     * negation, which StreamingQueries uses to stop at the last keys of a page, keeps the rows with nulls as well.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> Specification<T> after(KeysetScrollPosition position, Sort sort) {
+        if (position.isInitial()) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            List<Predicate> follows = new ArrayList<>();
+            List<Predicate> equal = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                Path<Comparable> path = root.get(order.getProperty());
+                Comparable value = (Comparable) position.getKeys().get(order.getProperty());
+                List<Predicate> seek = new ArrayList<>(equal);
+                seek.add(follows(cb, path, value, order.isAscending() == position.scrollsForward()));
+                follows.add(cb.and(seek.toArray(Predicate[]::new)));
+                equal.add(value == null ? cb.isNull(path) : cb.and(cb.isNotNull(path), cb.equal(path, value)));
+            }
+            return cb.or(follows.toArray(Predicate[]::new));
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate follows(CriteriaBuilder cb, Expression<Comparable> path, Comparable value, boolean greater) {
+        if (value == null) {
+            // Every value is greater than a null, none is lower
+            return greater ? cb.isNotNull(path) : cb.disjunction();
+        }
+        return greater ? cb.and(cb.isNotNull(path), cb.greaterThan(path, value)) : cb.or(cb.isNull(path), cb.lessThan(path, value));
+    }
+
+    private static <T> Specification<T> startsWith(String attribute, String value) {
+        String prefix = escape(value.substring(0, value.length() - 1));
+        return (root, query, cb) -> cb.like(root.get(attribute), prefix + "%", '\\');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,103 @@
+package aiss.videominer.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * Checks on startup that every attribute the list endpoints can filter or order on is the leading column of an index
+ * of the database, and warns about the ones that are not: filtering or ordering on them reads the whole table. The
+ * attributes of videominer.index-advisor.ignore are known to be served otherwise, like the texts of the search index.
+ */
+@Component
+public class IndexAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Value("${videominer.index-advisor.enabled:true}")
+    boolean enabled;
+
+    @Value("${videominer.index-advisor.ignore:}")
+    Set<String> ignore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check() {
+        if (!enabled) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            for (String field : unindexedFields(connection.getMetaData())) {
+                log.warn("{} has no index, filtering or ordering on it scans the whole table", field);
+            }
+        } catch (SQLException e) {
+            log.warn("The indexes of the database could not be read: {}", e.getMessage());
+        }
+    }
+
+    // The Entity.attribute names of the basic attributes whose column does not start any index
+    public List<String> unindexedFields(DatabaseMetaData metaData) throws SQLException {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        List<String> fields = new ArrayList<>();
+        List<EntityType<?>> entities = new ArrayList<>(entityManagerFactory.getMetamodel().getEntities());
+        entities.sort(Comparator.comparing(EntityType::getName));
+        for (EntityType<?> entity : entities) {
+            AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory.getMappingMetamodel()
+                    .getEntityDescriptor(entity.getJavaType());
+            Set<String> leading = leadingColumns(metaData, persister.getTableName());
+            entity.getSingularAttributes().stream()
+                    .filter(attribute -> attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC)
+                    .map(Attribute::getName)
+                    .sorted()
+                    .filter(name -> !ignore.contains(entity.getName() + "." + name))
+                    .filter(name -> !leading.contains(column(persister, name)))
+                    .forEach(name -> fields.add(entity.getName() + "." + name));
+        }
+        return fields;
+    }
+
+    private static String column(AbstractEntityPersister persister, String attribute) {
+        String[] columns = persister.getIdentifierPropertyName().equals(attribute)
+                ? persister.getIdentifierColumnNames()
+                : persister.getPropertyColumnNames(attribute);
+        return columns[0].toUpperCase(Locale.ROOT);
+    }
+
+    private static Set<String> leadingColumns(DatabaseMetaData metaData, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, table.toUpperCase(Locale.ROOT), false, false)) {
+            while (indexes.next()) {
+                if (indexes.getShort("ORDINAL_POSITION") == 1 && indexes.getString("COLUMN_NAME") != null) {
+                    columns.add(indexes.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,203 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import aiss.videominer.model.Video;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The JSON of a Channel includes its videos, the one of a Video its comments and captions, and a Comment its author,
+ * so their lastModified must move when one of those children changes. The parents of the rows inserted, updated or
+ * deleted by a transaction are collected during its flushes and touched just before it commits, level by level up to
+ * the channel. Parents inserted or deleted by the same transaction are left as they are.
+ *
+ * A touch is an update of lastModified alone. The listeners that act after a commit skip it, see onlyTouched: the
+ * search documents of the parents are unchanged, and every cached response that shows a parent is also built from
+ * the children whose change touched it.
+ */
+@Component
+public class LastModifiedListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private final Map<SessionImplementor, Touches> touches = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Channel || entity instanceof Video || entity instanceof Comment || entity instanceof User) {
+            touches(event.getSession()).skip(entity.getClass(), event.getId());
+        }
+        touchParent(event.getSession(), entity);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Channel || entity instanceof Video || entity instanceof Comment || entity instanceof User) {
+            touches(event.getSession()).skip(entity.getClass(), event.getId());
+        }
+        touchParent(event.getSession(), entity);
+    }
+
+    // A child moved to another parent changes both of them
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        touchParent(event.getSession(), entity);
+        if (event.getOldState() == null) {
+            return;
+        }
+        if (entity instanceof Video) {
+            touchPrevious(event, Channel.class, "channelId");
+        } else if (entity instanceof Comment || entity instanceof Caption) {
+            touchPrevious(event, Video.class, "videoId");
+        }
+    }
+
+    // Whether the update only wrote a new lastModified, as the touch of a parent does
+    public static boolean onlyTouched(PostUpdateEvent event) {
+        int[] dirty = event.getDirtyProperties();
+        if (dirty == null || dirty.length == 0) {
+            return false;
+        }
+        String[] names = event.getPersister().getPropertyNames();
+        for (int index : dirty) {
+            if (!LAST_MODIFIED.equals(names[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void touchPrevious(PostUpdateEvent event, Class<?> parent, String property) {
+        int index = event.getPersister().getPropertyIndex(property);
+        Object previous = event.getOldState()[index];
+        if (previous != null && !Objects.equals(previous, event.getState()[index])) {
+            touches(event.getSession()).add(parent, previous);
+        }
+    }
+
+    private void touchParent(EventSource session, Object entity) {
+        if (entity instanceof Video video && video.getChannelId() != null) {
+            touches(session).add(Channel.class, video.getChannelId());
+        } else if (entity instanceof Comment comment && comment.getVideoId() != null) {
+            touches(session).add(Video.class, comment.getVideoId());
+        } else if (entity instanceof Caption caption && caption.getVideoId() != null) {
+            touches(session).add(Video.class, caption.getVideoId());
+        } else if (entity instanceof User user && user.getId() != null) {
+            touches(session).add(User.class, user.getId());
+        }
+    }
+
+    private Touches touches(EventSource session) {
+        return touches.computeIfAbsent(session, s -> {
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> touches.remove(session));
+            return new Touches(session);
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    record Key(Class<?> type, Object id) {}
+
+    /*
+     * The parents to touch before the commit. Touching them flushes new updates, whose own parents are touched by the
+     * next process, until the channels are reached.
+     */
+    private static class Touches implements BeforeTransactionCompletionProcess {
+
+        private final Set<Key> done = new HashSet<>();
+
+        private final Set<Key> pending = new LinkedHashSet<>();
+
+        private final SessionImplementor session;
+
+        private boolean scheduled;
+
+        Touches(SessionImplementor session) {
+            this.session = session;
+        }
+
+        void skip(Class<?> type, Object id) {
+            done.add(new Key(type, id));
+        }
+
+        void add(Class<?> type, Object id) {
+            Key key = new Key(type, id);
+            if (done.contains(key) || !pending.add(key) || scheduled) {
+                return;
+            }
+            scheduled = true;
+            session.getActionQueue().registerProcess(this);
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            scheduled = false;
+            Set<Key> keys = new LinkedHashSet<>(pending);
+            pending.clear();
+            // Parents inserted after their children were added are skipped too
+            keys.removeAll(done);
+            done.addAll(keys);
+            for (Key key : keys) {
+                if (key.type() == User.class) {
+                    // A user is the author of a single comment
+                    session.createSelectionQuery("from Comment c where c.author.id = :id", Comment.class)
+                            .setParameter("id", key.id())
+                            .getResultList()
+                            .forEach(Comment::touch);
+                } else {
+                    Object parent = session.find(key.type(), key.id());
+                    if (parent instanceof Channel channel) {
+                        channel.touch();
+                    } else if (parent instanceof Video video) {
+                        video.touch();
+                    }
+                }
+            }
+            session.flush();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.service.RowStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/*
+ * The pages of FilteredRepository as RowStreams, read when the response is written. The rows come from an open result
+ * set with a JDBC fetch size and are written a chunk at a time: a chunk is detached from the persistence context once
+ * written, so the memory used does not depend on the page size, while the lazy associations of the rows of a chunk
+ * are still loaded together by the batch fetch size.
+ */
+@Component
+public class StreamingQueries {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${videominer.streaming.fetch-size:100}")
+    int fetchSize;
+
+    private TransactionTemplate readOnly;
+
+    @PostConstruct
+    void init() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    public <T> RowStream<T> page(Class<T> type, Specification<T> spec, int page, int size, Sort sort) {
+        return stream(() -> query(type, spec, sort).setFirstResult(page * size).setMaxResults(size));
+    }
+
+    /*
+     * The rows after the position up to the last keys read by lastKeys, which the cursor of the next page holds, so that
+     * a row inserted meanwhile before those keys is returned in this page instead of being skipped by the next one. The
+     * page is only limited to the size when it is the last one.
+     */
+    public <T> RowStream<T> after(Class<T> type, Specification<T> spec, ScrollPosition position, Optional<Map<String, Object>> lastKeys,
+                                  int size, Sort sort) {
+        Specification<T> seek = spec.and(keyset(position, sort));
+        if (lastKeys.isPresent()) {
+            KeysetScrollPosition last = ScrollPosition.of(lastKeys.get(), ((KeysetScrollPosition) position).getDirection());
+            Specification<T> page = seek.and(Specification.not(keyset(last, sort)));
+            return stream(() -> query(type, page, sort));
+        }
+        return stream(() -> query(type, seek, sort).setMaxResults(size));
+    }
+
+    /*
+     * The sort keys of the last row of the page read after the position, empty when no row follows that page. The
+     * cursor of the next page goes in a header, which has to be sent before the rows, so it is read beforehand with the
+     * keys alone, and the rows are then read up to them.
+     */
+    public <T> Optional<Map<String, Object>> lastKeys(Class<T> type, Specification<T> spec, ScrollPosition position, int size, Sort sort) {
+        if (size < 1) {
+            return Optional.empty();
+        }
+        return readOnly.execute(status -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = cb.createTupleQuery();
+            Root<T> root = query.from(type);
+            List<Selection<?>> keys = new ArrayList<>();
+            sort.forEach(order -> keys.add(root.get(order.getProperty()).alias(order.getProperty())));
+            query.multiselect(keys);
+            where(query, root, cb, spec.and(keyset(position, sort)));
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+            List<Tuple> rows = entityManager.createQuery(query).setFirstResult(size - 1).setMaxResults(2).getResultList();
+            if (rows.size() < 2) {
+                return Optional.empty();
+            }
+            Map<String, Object> last = new LinkedHashMap<>();
+            sort.forEach(order -> last.put(order.getProperty(), rows.get(0).get(order.getProperty())));
+            return Optional.of(last);
+        });
+    }
+
+    private static <T> Specification<T> keyset(ScrollPosition position, Sort sort) {
+        return Specification.where(Filters.after((KeysetScrollPosition) position, sort));
+    }
+
+    // The eager to-one associations, such as the author of a comment, are joined instead of read with one query per row
+    private <T> TypedQuery<T> query(Class<T> type, Specification<T> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        for (SingularAttribute<? super T, ?> attribute : root.getModel().getSingularAttributes()) {
+            if (attribute.isAssociation()) {
+                root.fetch(attribute);
+            }
+        }
+        where(query, root, cb, spec);
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query);
+    }
+
+    private static <T> void where(CriteriaQuery<?> query, Root<T> root, CriteriaBuilder cb, Specification<T> spec) {
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    private <T> RowStream<T> stream(Supplier<TypedQuery<T>> query) {
+        return new RowStream<>(writer -> {
+            try {
+                readOnly.executeWithoutResult(status -> {
+                    try (Stream<T> rows = query.get().setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize).getResultStream()) {
+                        List<T> chunk = new ArrayList<>(fetchSize);
+                        Iterator<T> iterator = rows.iterator();
+                        while (iterator.hasNext()) {
+                            chunk.add(iterator.next());
+                            if (chunk.size() == fetchSize) {
+                                write(chunk, writer);
+                            }
+                        }
+                        write(chunk, writer);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private <T> void write(List<T> chunk, RowStream.RowWriter<? super T> writer) {
+        try {
+            for (T row : chunk) {
+                writer.write(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,50 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.exception.BadRequestTimestamp;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/*
+ * The period of time designated by a time parameter, from its start included to its end excluded. A full instant
+ * designates itself, while 2024, 2024-05 or 2024-05-01 designate the whole year, month or day in UTC.
+ */
+public record TimePeriod(Instant start, Instant end) {
+
+    public static TimePeriod parse(String value) throws BadRequestTimestamp {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return switch (value.length()) {
+                case 4 -> {
+                    Year year = Year.parse(value);
+                    yield new TimePeriod(start(year.atDay(1)), start(year.plusYears(1).atDay(1)));
+                }
+                case 7 -> {
+                    YearMonth month = YearMonth.parse(value);
+                    yield new TimePeriod(start(month.atDay(1)), start(month.plusMonths(1).atDay(1)));
+                }
+                case 10 -> {
+                    LocalDate day = LocalDate.parse(value);
+                    yield new TimePeriod(start(day), start(day.plusDays(1)));
+                }
+                default -> {
+                    Instant instant = OffsetDateTime.parse(value).toInstant();
+                    yield new TimePeriod(instant, instant.plusNanos(1));
+                }
+            };
+        } catch (DateTimeParseException e) {
+            throw new BadRequestTimestamp();
+        }
+    }
+
+    private static Instant start(LocalDate day) {
+        return day.atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,22 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class UserSpecifications {
+
+    private UserSpecifications() {}
+
+    // Authors of the comments of a video, read with a subquery instead of one lazy load per comment
+    public static Specification<User> authorOfVideo(String videoId) {
+        return (root, query, cb) -> {
+            Subquery<Long> authors = query.subquery(Long.class);
+            Root<Comment> comment = authors.from(Comment.class);
+            authors.select(comment.get("author").get("id")).where(cb.equal(comment.get("videoId"), videoId));
+            return root.get("id").in(authors);
+        };
+    }
+}
@@ -1,15 +1,40 @@
 package aiss.videominer.repository;
 
 import aiss.videominer.model.Video;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
-public interface VideoRepository extends JpaRepository<Video, String> {
-    Page<Video> findByName(String name, Pageable pageable);
-    Page<Video> findById(String id, Pageable pageable);
-    Page<Video> findByDescriptionContaining(String description, Pageable pageable);
-    Page<Video> findByReleaseTimeContaining(String releaseTime, Pageable pageable);
+public interface VideoRepository extends JpaRepository<Video, String>, FilteredRepository<Video> {
+    boolean existsByIdIn(Collection<String> ids);
+    List<Video> findByChannelId(String channelId);
+    // Pages of a sub-resource are kept in the query cache until a write to the table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<Video> findByChannelId(String channelId, Pageable pageable);
+    default Window<Video> findByChannelId(String channelId, ScrollPosition position, int size, Sort sort) {
+        return findAfter((root, query, cb) -> cb.equal(root.get("channelId"), channelId), position, size, sort);
+    }
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select v from Video v where v.channelId is not null order by v.channelId, v.id")
+    Stream<Video> streamForExport();
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select v from Video v where v.channelId = :channelId order by v.id")
+    Stream<Video> streamForExport(String channelId);
 }
@@ -0,0 +1,180 @@
+package aiss.videominer.search;
+
+import aiss.videominer.exception.BadRequestSearchQuery;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollectorManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Inverted index of the comment texts and the video and channel names and descriptions. Documents are written by
+ * SearchIndexListener once the transaction that changed the rows commits, and read through a near real-time searcher,
+ * so searches see every committed change without waiting for a Lucene commit.
+ */
+@Component
+public class SearchIndex {
+
+    public enum Type {
+        COMMENT("text"),
+        VIDEO("name", "description"),
+        CHANNEL("name", "description");
+
+        private final String[] fields;
+
+        Type(String... fields) {
+            this.fields = fields;
+        }
+    }
+
+    public record Hits(List<String> ids, long total) {}
+
+    private static final String TYPE = "_type";
+
+    private static final String ID = "_id";
+
+    private static final String UID = "_uid";
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Directory directory;
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    // An empty directory keeps the index in memory, like the default H2 database. It is created empty on every start and
+    // filled again by SearchIndexListener.rebuild
+    public SearchIndex(@Value("${videominer.search.directory:}") String path) throws IOException {
+        directory = path.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(path));
+        // A bigger buffer than the default 16 MB keeps the indexing of a whole channel in a few segments
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setRAMBufferSizeMB(64));
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    // The values are given in the order of the fields of the type
+    public void index(Type type, String id, String... values) {
+        Document document = new Document();
+        document.add(new StringField(TYPE, type.name(), Field.Store.NO));
+        document.add(new StringField(ID, id, Field.Store.YES));
+        document.add(new StringField(UID, uid(type, id), Field.Store.NO));
+        for (int i = 0; i < type.fields.length; i++) {
+            if (values[i] != null) {
+                document.add(new TextField(type.fields[i], values[i], Field.Store.NO));
+            }
+        }
+        try {
+            writer.updateDocument(new Term(UID, uid(type, id)), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void remove(Type type, String id) {
+        try {
+            writer.deleteDocuments(new Term(UID, uid(type, id)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Runs a query in the Lucene syntax over the fields of the type: words are all required, "quoted words" match a
+     * phrase and word* a prefix. Ids are returned by decreasing relevance, with the exact number of matching documents.
+     */
+    public Hits search(Type type, String text, int page, int size) throws BadRequestSearchQuery {
+        if (page < 0 || size < 1) {
+            throw new BadRequestSearchQuery();
+        }
+        int hits;
+        try {
+            hits = Math.multiplyExact(page + 1, size);
+        } catch (ArithmeticException e) {
+            throw new BadRequestSearchQuery();
+        }
+        Query query;
+        try {
+            MultiFieldQueryParser parser = new MultiFieldQueryParser(type.fields, analyzer);
+            parser.setDefaultOperator(QueryParser.Operator.AND);
+            query = new BooleanQuery.Builder()
+                    .add(parser.parse(text), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(new Term(TYPE, type.name())), BooleanClause.Occur.FILTER)
+                    .build();
+        } catch (ParseException | IllegalArgumentException e) {
+            throw new BadRequestSearchQuery();
+        }
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // Every match is counted, past the 1000 after which Lucene only gives a lower bound of the total by default,
+                // and no more hits are collected than there are documents
+                int collected = Math.min(hits, Math.max(1, searcher.getIndexReader().maxDoc()));
+                TopDocs top = searcher.search(query, new TopScoreDocCollectorManager(collected, Integer.MAX_VALUE));
+                List<String> ids = new ArrayList<>();
+                Set<String> fields = Set.of(ID);
+                ScoreDoc[] docs = top.scoreDocs;
+                for (int i = page * size; i < docs.length; i++) {
+                    ids.add(searcher.storedFields().document(docs[i].doc, fields).get(ID));
+                }
+                return new Hits(ids, top.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Puts the entities loaded for some hits back in the order of relevance
+    public static <T> List<T> ranked(List<String> ids, List<T> entities, Function<T, String> id) {
+        Map<String, T> byId = entities.stream().collect(Collectors.toMap(id, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static String uid(Type type, String id) {
+        return type.name() + ":" + id;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+}
@@ -0,0 +1,130 @@
+package aiss.videominer.search;
+
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.Video;
+import aiss.videominer.repository.LastModifiedListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+ * Keeps the SearchIndex in sync with the Comment, Video and Channel rows. Hibernate calls it after the commit of each
+ * transaction that inserted, updated or deleted one of them, cascades included, so rolled back changes never reach
+ * the index.
+ */
+@Component
+public class SearchIndexListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexListener.class);
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    // The index lives outside the database, it is built again from the stored rows when the application starts
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+        entityManager.createQuery("select c.id, c.text from Comment c", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                .getResultStream()
+                .forEach(row -> searchIndex.index(SearchIndex.Type.COMMENT, (String) row[0], (String) row[1]));
+        entityManager.createQuery("select v.id, v.name, v.description from Video v", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                .getResultStream()
+                .forEach(row -> searchIndex.index(SearchIndex.Type.VIDEO, (String) row[0], (String) row[1], (String) row[2]));
+        entityManager.createQuery("select c.id, c.name, c.description from Channel c", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                .getResultStream()
+                .forEach(row -> searchIndex.index(SearchIndex.Type.CHANNEL, (String) row[0], (String) row[1], (String) row[2]));
+        log.info("Search index rebuilt in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        index(event.getEntity());
+    }
+
+    // The parents touched for a change of their children keep the same text
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!LastModifiedListener.onlyTouched(event)) {
+            index(event.getEntity());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Comment comment) {
+            searchIndex.remove(SearchIndex.Type.COMMENT, comment.getId());
+        } else if (entity instanceof Video video) {
+            searchIndex.remove(SearchIndex.Type.VIDEO, video.getId());
+        } else if (entity instanceof Channel channel) {
+            searchIndex.remove(SearchIndex.Type.CHANNEL, channel.getId());
+        }
+    }
+
+    private void index(Object entity) {
+        if (entity instanceof Comment comment) {
+            searchIndex.index(SearchIndex.Type.COMMENT, comment.getId(), comment.getText());
+        } else if (entity instanceof Video video) {
+            searchIndex.index(SearchIndex.Type.VIDEO, video.getId(), video.getName(), video.getDescription());
+        } else if (entity instanceof Channel channel) {
+            searchIndex.index(SearchIndex.Type.CHANNEL, channel.getId(), channel.getName(), channel.getDescription());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Comment.class || type == Video.class || type == Channel.class;
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+}
@@ -0,0 +1,81 @@
+package aiss.videominer.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Checks the Authorization header of every VideoMiner call before the request reaches the DispatcherServlet, so a
+ * call with a missing or wrong token is rejected before its body is read, deserialized or validated.
+ * The rejections are answered with preallocated bodies and no exception is thrown, which keeps a flood of bad
+ * requests cheap.
+ */
+public class AuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String TOKEN_PATH = "/videoMiner/v1/token";
+
+    // Request attribute holding the token once it has been verified
+    public static final String VERIFIED_TOKEN = AuthenticationFilter.class.getName() + ".token";
+
+    private static final byte[] TOKEN_REQUIRED = errorBody("VideoMiner calls require authorization");
+
+    private static final byte[] TOKEN_NOT_VALID = errorBody("VideoMiner doesn't allow calls without a valid token");
+
+    private final TokenCache tokenCache;
+
+    private final TokenSigner tokenSigner;
+
+    public AuthenticationFilter(TokenCache tokenCache, TokenSigner tokenSigner) {
+        this.tokenCache = tokenCache;
+        this.tokenSigner = tokenSigner;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Tokens are created without authorization
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return HttpMethod.POST.matches(request.getMethod()) && path.equals(TOKEN_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String token = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (token == null) {
+            reject(response, TOKEN_REQUIRED);
+        } else if (isValid(token)) {
+            request.setAttribute(VERIFIED_TOKEN, token);
+            filterChain.doFilter(request, response);
+        } else {
+            reject(response, TOKEN_NOT_VALID);
+        }
+    }
+
+    // Token ids are chosen by the clients, so a stored opaque token may have the shape of a signed one: it is looked up
+    // whenever the signature is not checked or does not match
+    private boolean isValid(String token) {
+        if (tokenSigner.isEnabled() && tokenSigner.isSigned(token) && tokenSigner.verify(token)) {
+            return true;
+        }
+        return tokenCache.isValid(token);
+    }
+
+    private static void reject(HttpServletResponse response, byte[] body) throws IOException {
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static byte[] errorBody(String message) {
+        return ("{\"status\":403,\"error\":\"Forbidden\",\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,30 @@
+package aiss.videominer.security;
+
+import org.springframework.http.HttpMethod;
+
+/*
+ * Groups the VideoMiner endpoints by their cost, each class having its own rate limit.
+ */
+public enum EndpointClass {
+
+    READ, WRITE, BULK;
+
+    public static EndpointClass of(String method, String path) {
+        // Exports read whole Channel graphs
+        if (HttpMethod.GET.matches(method) && path.endsWith("/export")) {
+            return BULK;
+        }
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) {
+            return READ;
+        }
+        // Whole Channel graphs or streams of videos posted by the miners
+        if (HttpMethod.POST.matches(method) && (path.equals("/videoMiner/v1/channels") || path.endsWith("/videos/stream"))) {
+            return BULK;
+        }
+        return WRITE;
+    }
+
+    public String key() {
+        return name().toLowerCase();
+    }
+}
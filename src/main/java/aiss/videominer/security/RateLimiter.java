@@ -0,0 +1,148 @@
+package aiss.videominer.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Token bucket per Authorization token and endpoint class. Each bucket is kept as a single "theoretical arrival time"
+ * (the instant at which the bucket would be full again) that every allowed call pushes forward by one interval with a
+ * compare-and-set, so concurrent calls made with the same token never block each other. The buckets of the least used
+ * tokens are dropped once there are more than max-tokens of them.
+ */
+@Component
+public class RateLimiter {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.rate-limit.enabled:true}")
+    boolean enabled;
+
+    @Value("${videominer.rate-limit.read.rate:50}")
+    double readRate;
+
+    @Value("${videominer.rate-limit.read.capacity:100}")
+    int readCapacity;
+
+    @Value("${videominer.rate-limit.write.rate:10}")
+    double writeRate;
+
+    @Value("${videominer.rate-limit.write.capacity:20}")
+    int writeCapacity;
+
+    @Value("${videominer.rate-limit.bulk.rate:1}")
+    double bulkRate;
+
+    @Value("${videominer.rate-limit.bulk.capacity:5}")
+    int bulkCapacity;
+
+    @Value("${videominer.rate-limit.idle-expiry:1h}")
+    Duration idleExpiry;
+
+    @Value("${videominer.rate-limit.max-tokens:100000}")
+    long maxTokens;
+
+    private final long[] intervals = new long[EndpointClass.values().length];
+
+    private final long[] tolerances = new long[EndpointClass.values().length];
+
+    private Cache<String, TokenUsage> usages;
+
+    private Counter[] allowedCounters;
+
+    private Counter[] rejectedCounters;
+
+    @PostConstruct
+    void init() {
+        configure(EndpointClass.READ, readRate, readCapacity);
+        configure(EndpointClass.WRITE, writeRate, writeCapacity);
+        configure(EndpointClass.BULK, bulkRate, bulkCapacity);
+        usages = Caffeine.newBuilder()
+                .maximumSize(maxTokens)
+                .expireAfterAccess(idleExpiry)
+                .build();
+        allowedCounters = new Counter[EndpointClass.values().length];
+        rejectedCounters = new Counter[EndpointClass.values().length];
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            allowedCounters[endpointClass.ordinal()] = meterRegistry.counter("videominer.ratelimit.requests", "class", endpointClass.key(), "result", "allowed");
+            rejectedCounters[endpointClass.ordinal()] = meterRegistry.counter("videominer.ratelimit.requests", "class", endpointClass.key(), "result", "rejected");
+        }
+    }
+
+    private void configure(EndpointClass endpointClass, double rate, int capacity) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        intervals[endpointClass.ordinal()] = interval;
+        tolerances[endpointClass.ordinal()] = interval * (capacity - 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns 0 when the call is allowed, or else the nanoseconds to wait before the next call would be allowed
+    public long tryAcquire(String token, EndpointClass endpointClass) {
+        TokenUsage usage = usages.get(token, t -> new TokenUsage());
+        int i = endpointClass.ordinal();
+        long interval = intervals[i];
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = usage.arrivals.get(i);
+            long start = Math.max(arrival, now);
+            long wait = start - tolerances[i] - now;
+            if (wait > 0) {
+                usage.rejected[i].increment();
+                rejectedCounters[i].increment();
+                return wait;
+            }
+            if (usage.arrivals.compareAndSet(i, arrival, start + interval)) {
+                usage.allowed[i].increment();
+                allowedCounters[i].increment();
+                return 0;
+            }
+        }
+    }
+
+    public Map<String, Map<String, Long>> usage(String token) {
+        TokenUsage usage = usages.getIfPresent(token);
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            int i = endpointClass.ordinal();
+            Map<String, Long> counters = new LinkedHashMap<>();
+            counters.put("allowed", usage == null ? 0 : usage.allowed[i].sum());
+            counters.put("rejected", usage == null ? 0 : usage.rejected[i].sum());
+            result.put(endpointClass.key(), counters);
+        }
+        return result;
+    }
+
+    private static class TokenUsage {
+
+        private final AtomicLongArray arrivals = new AtomicLongArray(EndpointClass.values().length);
+
+        private final LongAdder[] allowed = new LongAdder[EndpointClass.values().length];
+
+        private final LongAdder[] rejected = new LongAdder[EndpointClass.values().length];
+
+        TokenUsage() {
+            long now = System.nanoTime();
+            for (int i = 0; i < allowed.length; i++) {
+                arrivals.set(i, now);
+                allowed[i] = new LongAdder();
+                rejected[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package aiss.videominer.security;
+
+import aiss.videominer.repository.TokenRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+ * Keeps the result of the Authorization checks in memory, so that only the first call made with a token (or the first
+ * one after its entry expires) goes to the TokenRepository. Tokens that were rejected are also remembered for a while,
+ * otherwise a client retrying with a wrong token would keep hitting the database.
+ */
+@Component
+public class TokenCache {
+
+    @Autowired
+    TokenRepository tokenRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.token.cache.max-size:10000}")
+    long maxSize;
+
+    @Value("${videominer.token.cache.ttl:10m}")
+    Duration ttl;
+
+    @Value("${videominer.token.cache.negative-max-size:10000}")
+    long negativeMaxSize;
+
+    @Value("${videominer.token.cache.negative-ttl:30s}")
+    Duration negativeTtl;
+
+    private Cache<String, Boolean> validTokens;
+
+    private Cache<String, Boolean> rejectedTokens;
+
+    @PostConstruct
+    void init() {
+        validTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        rejectedTokens = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validTokens, "tokens.valid");
+        CaffeineCacheMetrics.monitor(meterRegistry, rejectedTokens, "tokens.rejected");
+    }
+
+    public boolean isValid(String token) {
+        if (validTokens.getIfPresent(token) != null) {
+            return true;
+        }
+        if (rejectedTokens.getIfPresent(token) != null) {
+            return false;
+        }
+        if (tokenRepository.existsById(token)) {
+            validTokens.put(token, Boolean.TRUE);
+            return true;
+        }
+        rejectedTokens.put(token, Boolean.TRUE);
+        return false;
+    }
+
+    public void put(String token) {
+        rejectedTokens.invalidate(token);
+        validTokens.put(token, Boolean.TRUE);
+    }
+
+    // Must be called whenever a token is removed from the TokenRepository
+    public void invalidate(String token) {
+        validTokens.invalidate(token);
+        rejectedTokens.invalidate(token);
+    }
+}
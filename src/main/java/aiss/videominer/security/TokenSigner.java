@@ -0,0 +1,109 @@
+package aiss.videominer.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/*
+ * Issues and verifies self-contained tokens of the form vm1.<subject>.<expiry>.<signature>, where the signature is
+ * the HMAC-SHA256 of the first three parts. They can be checked without any storage access, so every VideoMiner
+ * instance sharing the same secret accepts the tokens issued by the others.
+ */
+@Component
+public class TokenSigner {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenSigner.class);
+
+    private static final String PREFIX = "vm1";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Value("${videominer.token.mode:opaque}")
+    String mode;
+
+    @Value("${videominer.token.secret:}")
+    String secret;
+
+    @Value("${videominer.token.signed-ttl:24h}")
+    Duration signedTtl;
+
+    private SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            if (isEnabled()) {
+                log.warn("videominer.token.secret is not set, signed tokens will only be accepted by this instance until it restarts");
+            }
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public boolean isEnabled() {
+        return "signed".equalsIgnoreCase(mode);
+    }
+
+    public Instant expiration() {
+        return Instant.now().plus(signedTtl);
+    }
+
+    public String sign(String subject, Instant expiresAt) {
+        String payload = PREFIX + "." + encode(subject.getBytes(StandardCharsets.UTF_8)) + "." + expiresAt.getEpochSecond();
+        return payload + "." + encode(hmac(payload));
+    }
+
+    // Whether the token has the shape of a signed token, otherwise it is an opaque one stored in the TokenRepository
+    public boolean isSigned(String token) {
+        return token.startsWith(PREFIX + ".") && token.chars().filter(c -> c == '.').count() == 3;
+    }
+
+    public boolean verify(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = token.lastIndexOf('.', signatureStart - 1);
+        String payload = token.substring(0, signatureStart);
+        try {
+            long expiry = Long.parseLong(token.substring(expiryStart + 1, signatureStart));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+            return MessageDigest.isEqual(signature, hmac(payload)) && Instant.now().getEpochSecond() < expiry;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] hmac(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,149 @@
+package aiss.videominer.service;
+
+import aiss.videominer.dto.ChannelDto;
+import aiss.videominer.exception.BadRequestFetchPlan;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Video;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.hibernate.Hibernate;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/*
+ * What a GET of channels has to load and serialize, built from the fields and expand request parameters:
+ * fields=id,name restricts the Channel properties and expand=videos,videos.comments,videos.captions selects the
+ * associations. Without any of them the whole graph is returned, as it has always been.
+ */
+public class ChannelFetchPlan {
+
+    private static final Set<String> FIELDS = Set.of("id", "name", "description", "createdTime", "videos");
+
+    private static final Set<String> EXPANSIONS = Set.of("videos", "videos.comments", "videos.captions");
+
+    public static final ChannelFetchPlan FULL = new ChannelFetchPlan(FIELDS, EXPANSIONS);
+
+    private final Set<String> fields;
+
+    private final Set<String> expand;
+
+    private ChannelFetchPlan(Set<String> fields, Set<String> expand) {
+        this.fields = fields;
+        this.expand = expand;
+    }
+
+    public static ChannelFetchPlan of(String fields, String expand) throws BadRequestFetchPlan {
+        if (fields == null && expand == null) {
+            return FULL;
+        }
+        Set<String> expanded = parse(expand, EXPANSIONS);
+        if (expanded.contains("videos.comments") || expanded.contains("videos.captions")) {
+            expanded.add("videos");
+        }
+        Set<String> selected = fields == null ? new LinkedHashSet<>(FIELDS) : parse(fields, FIELDS);
+        if (expanded.contains("videos")) {
+            selected.add("videos");
+        } else if (selected.contains("videos")) {
+            // Asking for the videos field alone returns them without their comments and captions
+            expanded.add("videos");
+        } else {
+            selected.remove("videos");
+        }
+        return new ChannelFetchPlan(selected, expanded);
+    }
+
+    private static Set<String> parse(String value, Set<String> allowed) throws BadRequestFetchPlan {
+        if (value == null || value.isBlank()) {
+            return new LinkedHashSet<>();
+        }
+        Set<String> names = Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!allowed.containsAll(names)) {
+            throw new BadRequestFetchPlan();
+        }
+        return names;
+    }
+
+    public boolean expands(String path) {
+        return expand.contains(path);
+    }
+
+    // Tells apart the ETags of the representations of a channel, empty for the whole graph
+    public String variant() {
+        if (this == FULL) {
+            return "";
+        }
+        return Integer.toString((String.join(",", new TreeSet<>(fields)) + ";" + String.join(",", new TreeSet<>(expand))).hashCode() & Integer.MAX_VALUE, 36);
+    }
+
+    /*
+     * Loads the selected associations while the persistence context is still open. With the batch fetch size each
+     * level is read with one query per batch of owners, instead of one per Channel, Video or Comment.
+     */
+    public void initialize(List<Channel> channels) {
+        if (!expands("videos")) {
+            return;
+        }
+        for (Channel channel : channels) {
+            Hibernate.initialize(channel.getVideos());
+        }
+        for (Channel channel : channels) {
+            for (Video video : channel.getVideos()) {
+                if (expands("videos.comments")) {
+                    Hibernate.initialize(video.getComments());
+                }
+                if (expands("videos.captions")) {
+                    Hibernate.initialize(video.getCaptions());
+                }
+            }
+        }
+    }
+
+    // Copies the associations of the plan, the others are not read
+    public ChannelDto map(Channel channel) {
+        return ChannelDto.of(channel, expands("videos"), expands("videos.comments"), expands("videos.captions"));
+    }
+
+    // Wraps the response so that the properties left out of the plan are not serialized
+    public MappingJacksonValue view(List<Channel> channels) {
+        MappingJacksonValue value = new MappingJacksonValue(channels.stream().map(this::map).toList());
+        value.setFilters(filters());
+        return value;
+    }
+
+    public MappingJacksonValue view(Channel channel) {
+        MappingJacksonValue value = new MappingJacksonValue(map(channel));
+        value.setFilters(filters());
+        return value;
+    }
+
+    // The streamed lists read their associations while they are copied, the filters keep them to the plan
+    public RowStream<ChannelDto> view(RowStream<Channel> rows) {
+        return rows.map(this::map).filters(filters());
+    }
+
+    private FilterProvider filters() {
+        if (this == FULL) {
+            return null;
+        }
+        Set<String> videoExclusions = new LinkedHashSet<>();
+        if (!expands("videos.comments")) {
+            videoExclusions.add("comments");
+        }
+        if (!expands("videos.captions")) {
+            videoExclusions.add("captions");
+        }
+        return new SimpleFilterProvider().setFailOnUnknownId(false)
+                .addFilter(Channel.FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields))
+                .addFilter(Video.FILTER, SimpleBeanPropertyFilter.serializeAllExcept(videoExclusions));
+    }
+}
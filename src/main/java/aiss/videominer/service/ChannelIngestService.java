@@ -0,0 +1,200 @@
+package aiss.videominer.service;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.Video;
+import aiss.videominer.repository.CaptionRepository;
+import aiss.videominer.repository.ChannelRepository;
+import aiss.videominer.repository.CommentRepository;
+import aiss.videominer.repository.VideoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/*
+ * Stores the Channel graphs posted by the miners. A channel that is not stored yet is persisted instead of merged,
+ * so Hibernate does not select every video, comment and caption before inserting it, and the inserts are sent in
+ * JDBC batches (see hibernate.jdbc.batch_size and hibernate.order_inserts). A channel that shares any id with what is
+ * already stored, whether of the channel, a video, a comment or a caption, goes through the ChannelUpsertService.
+ */
+@Service
+public class ChannelIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChannelIngestService.class);
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @Autowired
+    VideoRepository videoRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    CaptionRepository captionRepository;
+
+    @Autowired
+    ChannelUpsertService channelUpsertService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Counter rows;
+
+    private Timer timer;
+
+    @PostConstruct
+    void init() {
+        rows = meterRegistry.counter("videominer.ingest.rows");
+        timer = meterRegistry.timer("videominer.ingest");
+    }
+
+    @Transactional
+    public Channel ingest(Channel channel) {
+        long start = System.nanoTime();
+        for (Video video : channel.getVideos()) {
+            link(channel.getId(), video);
+        }
+        if (anyStored(channel)) {
+            channelUpsertService.upsert(channel, false);
+        } else {
+            entityManager.persist(channel);
+        }
+        entityManager.flush();
+        record(channel.getId(), 1 + countRows(channel.getVideos()), System.nanoTime() - start);
+        return channel;
+    }
+
+    // Stores a re-mined channel, only writing what changed since the last time it was posted
+    @Transactional
+    public UpsertSummary upsert(Channel channel, boolean prune) {
+        long start = System.nanoTime();
+        UpsertSummary summary = channelUpsertService.upsert(channel, prune);
+        entityManager.flush();
+        record(channel.getId(), 1 + countRows(channel.getVideos()), System.nanoTime() - start);
+        return summary;
+    }
+
+    /*
+     * Stores the channel first, then its videos in chunks so that the progress can be followed, all in one
+     * transaction: like the synchronous POST, nothing is stored if a chunk fails. The stored videos are reported after
+     * each chunk but are only visible to the readers once the last one is committed.
+     */
+    @Transactional
+    public void ingest(Channel channel, int chunkSize, IntConsumer stored) {
+        ingest(new Channel(channel.getId(), channel.getName(), channel.getDescription(), channel.getCreatedTime()));
+        List<Video> videos = channel.getVideos();
+        for (int from = 0; from < videos.size(); from += chunkSize) {
+            List<Video> chunk = videos.subList(from, Math.min(from + chunkSize, videos.size()));
+            ingestVideos(channel.getId(), chunk);
+            stored.accept(chunk.size());
+        }
+    }
+
+    // Stores a chunk of videos of an existing channel, used by the streaming and asynchronous ingestion
+    @Transactional
+    public void ingestVideos(String channelId, List<Video> videos) {
+        long start = System.nanoTime();
+        channelUpsertService.upsertVideos(channelId, videos, false, new UpsertSummary());
+        entityManager.flush();
+        record(channelId, countRows(videos), System.nanoTime() - start);
+    }
+
+    /*
+     * The children posted one at a time are inserted directly with their foreign key, without loading the collection
+     * of the parent. A duplicated id makes the commit fail with a DataIntegrityViolationException.
+     */
+    @Transactional
+    public Video addVideo(String channelId, Video video) {
+        link(channelId, video);
+        entityManager.persist(video);
+        return video;
+    }
+
+    @Transactional
+    public Comment addComment(String videoId, Comment comment) {
+        comment.setVideoId(videoId);
+        entityManager.persist(comment);
+        return comment;
+    }
+
+    @Transactional
+    public Caption addCaption(String videoId, Caption caption) {
+        caption.setVideoId(videoId);
+        entityManager.persist(caption);
+        return caption;
+    }
+
+    // Sets the foreign keys of the video and its children, which are mapped on the child side
+    public static void link(String channelId, Video video) {
+        video.setChannelId(channelId);
+        if (video.getComments() != null) {
+            for (Comment comment : video.getComments()) {
+                comment.setVideoId(video.getId());
+            }
+        }
+        if (video.getCaptions() != null) {
+            for (Caption caption : video.getCaptions()) {
+                caption.setVideoId(video.getId());
+            }
+        }
+    }
+
+    private boolean anyStored(Channel channel) {
+        List<Video> videos = channel.getVideos();
+        return channelRepository.existsById(channel.getId())
+                || anyStored(videos.stream().map(Video::getId).toList(), videoRepository::existsByIdIn)
+                || anyStored(videos.stream().flatMap(video -> ChannelUpsertService.nullToEmpty(video.getComments()).stream()).map(Comment::getId).toList(), commentRepository::existsByIdIn)
+                || anyStored(videos.stream().flatMap(video -> ChannelUpsertService.nullToEmpty(video.getCaptions()).stream()).map(Caption::getId).toList(), captionRepository::existsByIdIn);
+    }
+
+    // Asks in chunks, like the ChannelUpsertService looks the rows up
+    private static boolean anyStored(List<String> ids, Predicate<List<String>> exists) {
+        for (int from = 0; from < ids.size(); from += ChannelUpsertService.LOOKUP_SIZE) {
+            if (exists.test(ids.subList(from, Math.min(from + ChannelUpsertService.LOOKUP_SIZE, ids.size())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(String channelId, long count, long nanos) {
+        rows.increment(count);
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        double seconds = nanos / 1e9;
+        log.info("Ingested channel {}: {} rows in {} ms ({} rows/s)", channelId, count, TimeUnit.NANOSECONDS.toMillis(nanos), Math.round(count / seconds));
+    }
+
+    private static long countRows(List<Video> videos) {
+        long count = 0;
+        for (Video video : videos) {
+            count++;
+            if (video.getComments() != null) {
+                // Every comment carries its own author row
+                count += 2L * video.getComments().size();
+            }
+            if (video.getCaptions() != null) {
+                count += video.getCaptions().size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,200 @@
+package aiss.videominer.service;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import aiss.videominer.model.Video;
+import aiss.videominer.repository.CaptionRepository;
+import aiss.videominer.repository.ChannelRepository;
+import aiss.videominer.repository.CommentRepository;
+import aiss.videominer.repository.VideoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Stores a re-mined channel by comparing it with what is already stored instead of merging the whole graph: the
+ * stored videos, comments and captions are read by the ids of the posted ones, only the new rows are inserted and only
+ * the changed fields are updated. A comment or caption that is already stored is updated wherever it is posted, under
+ * another video or under a new one, which moves it. Optionally, the stored rows that are no longer in the posted
+ * channel are deleted.
+ */
+@Service
+public class ChannelUpsertService {
+
+    // Ids looked up per query, so that the IN lists of a large channel stay small
+    static final int LOOKUP_SIZE = 1000;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @Autowired
+    VideoRepository videoRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    CaptionRepository captionRepository;
+
+    @Transactional
+    public UpsertSummary upsert(Channel incoming, boolean prune) {
+        UpsertSummary summary = new UpsertSummary();
+        Channel stored = channelRepository.findById(incoming.getId()).orElse(null);
+        if (stored == null) {
+            entityManager.persist(new Channel(incoming.getId(), incoming.getName(), incoming.getDescription(), incoming.getCreatedTime()));
+            summary.getChannel().inserted(1);
+        } else {
+            boolean changed = !Objects.equals(stored.getName(), incoming.getName())
+                    || !Objects.equals(stored.getDescription(), incoming.getDescription())
+                    || !Objects.equals(stored.getCreatedTime(), incoming.getCreatedTime());
+            stored.setName(incoming.getName());
+            stored.setDescription(incoming.getDescription());
+            stored.setCreatedTime(incoming.getCreatedTime());
+            summary.getChannel().compared(changed);
+        }
+        upsertVideos(incoming.getId(), incoming.getVideos(), prune, summary);
+        return summary;
+    }
+
+    @Transactional
+    public void upsertVideos(String channelId, List<Video> incoming, boolean prune, UpsertSummary summary) {
+        Map<String, Video> stored = byId(videoRepository.findAllById(incoming.stream().map(Video::getId).toList()), Video::getId);
+        for (Video video : incoming) {
+            Video current = stored.get(video.getId());
+            if (current == null) {
+                // Only the row of the video, its children are stored below like those of the stored videos
+                Video header = new Video(video.getId(), video.getName(), video.getDescription(), video.getReleaseTime());
+                header.setChannelId(channelId);
+                entityManager.persist(header);
+                summary.getVideos().inserted(1);
+                continue;
+            }
+            boolean changed = !Objects.equals(current.getChannelId(), channelId)
+                    || !Objects.equals(current.getName(), video.getName())
+                    || !Objects.equals(current.getDescription(), video.getDescription())
+                    || !Objects.equals(current.getReleaseTime(), video.getReleaseTime());
+            current.setChannelId(channelId);
+            current.setName(video.getName());
+            current.setDescription(video.getDescription());
+            current.setReleaseTime(video.getReleaseTime());
+            summary.getVideos().compared(changed);
+        }
+        upsertChildren(incoming, stored.keySet(), prune, summary);
+        if (prune) {
+            // The moved children must leave the collections of their old videos before these are removed
+            entityManager.flush();
+            Set<String> incomingIds = incoming.stream().map(Video::getId).collect(Collectors.toSet());
+            for (Video video : videoRepository.findByChannelId(channelId)) {
+                if (!incomingIds.contains(video.getId())) {
+                    // The comments and captions go with it through the cascade
+                    entityManager.remove(video);
+                    summary.getVideos().removed();
+                }
+            }
+        }
+    }
+
+    private void upsertChildren(List<Video> videos, Set<String> storedVideoIds, boolean prune, UpsertSummary summary) {
+        List<String> commentIds = videos.stream().flatMap(video -> nullToEmpty(video.getComments()).stream()).map(Comment::getId).toList();
+        List<String> captionIds = videos.stream().flatMap(video -> nullToEmpty(video.getCaptions()).stream()).map(Caption::getId).toList();
+        Map<String, Comment> storedComments = byId(lookUp(commentIds, commentRepository::findByIdIn), Comment::getId);
+        Map<String, Caption> storedCaptions = byId(lookUp(captionIds, captionRepository::findAllById), Caption::getId);
+        for (Video video : videos) {
+            for (Comment comment : nullToEmpty(video.getComments())) {
+                Comment current = storedComments.get(comment.getId());
+                if (current == null) {
+                    comment.setVideoId(video.getId());
+                    entityManager.persist(comment);
+                    summary.getComments().inserted(1);
+                } else {
+                    summary.getComments().compared(update(current, comment, video.getId()));
+                }
+            }
+            for (Caption caption : nullToEmpty(video.getCaptions())) {
+                Caption current = storedCaptions.get(caption.getId());
+                if (current == null) {
+                    caption.setVideoId(video.getId());
+                    entityManager.persist(caption);
+                    summary.getCaptions().inserted(1);
+                } else {
+                    boolean changed = !Objects.equals(current.getVideoId(), video.getId())
+                            || !Objects.equals(current.getName(), caption.getName())
+                            || !Objects.equals(current.getLanguage(), caption.getLanguage());
+                    current.setVideoId(video.getId());
+                    current.setName(caption.getName());
+                    current.setLanguage(caption.getLanguage());
+                    summary.getCaptions().compared(changed);
+                }
+            }
+        }
+        if (prune && !storedVideoIds.isEmpty()) {
+            Set<String> incomingComments = new HashSet<>(commentIds);
+            Set<String> incomingCaptions = new HashSet<>(captionIds);
+            for (Comment comment : commentRepository.findByVideoIdIn(storedVideoIds)) {
+                if (!incomingComments.contains(comment.getId())) {
+                    entityManager.remove(comment);
+                    summary.getComments().removed();
+                }
+            }
+            for (Caption caption : captionRepository.findByVideoIdIn(storedVideoIds)) {
+                if (!incomingCaptions.contains(caption.getId())) {
+                    entityManager.remove(caption);
+                    summary.getCaptions().removed();
+                }
+            }
+        }
+    }
+
+    private boolean update(Comment current, Comment comment, String videoId) {
+        boolean changed = !Objects.equals(current.getVideoId(), videoId)
+                || !Objects.equals(current.getText(), comment.getText())
+                || !Objects.equals(current.getCreatedOn(), comment.getCreatedOn());
+        current.setVideoId(videoId);
+        current.setText(comment.getText());
+        current.setCreatedOn(comment.getCreatedOn());
+        // Authors get a generated id, so they are compared through the comment they belong to
+        User author = current.getAuthor();
+        User incomingAuthor = comment.getAuthor();
+        if (author != null && incomingAuthor != null) {
+            changed |= !Objects.equals(author.getName(), incomingAuthor.getName())
+                    || !Objects.equals(author.getUser_link(), incomingAuthor.getUser_link())
+                    || !Objects.equals(author.getPicture_link(), incomingAuthor.getPicture_link());
+            author.setName(incomingAuthor.getName());
+            author.setUser_link(incomingAuthor.getUser_link());
+            author.setPicture_link(incomingAuthor.getPicture_link());
+        }
+        return changed;
+    }
+
+    private static <T> List<T> lookUp(List<String> ids, Function<List<String>, List<T>> query) {
+        List<T> found = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += LOOKUP_SIZE) {
+            found.addAll(query.apply(ids.subList(from, Math.min(from + LOOKUP_SIZE, ids.size()))));
+        }
+        return found;
+    }
+
+    private static <T> Map<String, T> byId(List<T> entities, Function<T, String> id) {
+        return entities.stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    static <T> List<T> nullToEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+}
@@ -0,0 +1,23 @@
+package aiss.videominer.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/*
+ * Strong ETags of the GET by id endpoints, made of the lastModified of the row, which also moves when a child included
+ * in its JSON changes. The column keeps microseconds, so a value read back from the database gives the same tag as the
+ * one generated in memory. A variant tells apart the different representations of the same row.
+ */
+public final class EntityTags {
+
+    private EntityTags() {}
+
+    public static String of(Instant lastModified) {
+        return of(lastModified, "");
+    }
+
+    public static String of(Instant lastModified, String variant) {
+        String tag = Long.toString(ChronoUnit.MICROS.between(Instant.EPOCH, lastModified), 36);
+        return "\"" + (variant.isEmpty() ? tag : tag + "-" + variant) + "\"";
+    }
+}
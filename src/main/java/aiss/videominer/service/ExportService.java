@@ -0,0 +1,199 @@
+package aiss.videominer.service;
+
+import aiss.videominer.dto.CaptionDto;
+import aiss.videominer.dto.ChannelDto;
+import aiss.videominer.dto.CommentDto;
+import aiss.videominer.dto.VideoDto;
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.Video;
+import aiss.videominer.repository.CaptionRepository;
+import aiss.videominer.repository.ChannelRepository;
+import aiss.videominer.repository.CommentRepository;
+import aiss.videominer.repository.VideoRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/*
+ * NDJSON export of GET /channels/{id}/export and GET /export: one line per channel, holding the same JSON as
+ * GET /channels/{id}. The channels, videos, comments and captions are read by four streaming queries sorted the same
+ * way, by channel and then by video, which are merged while the lines are written. So the whole store is read with four
+ * queries, whatever its size, and only the rows being written are held in memory. The queries run in a serializable
+ * transaction, so that they all read the same snapshot: a row inserted while the export is written would otherwise
+ * come without its parent and stop the merge of its stream.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    // Rows written between two clears of the persistence context
+    private static final int CLEAR_INTERVAL = 1000;
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @Autowired
+    VideoRepository videoRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    CaptionRepository captionRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    // The associations are written from the merged queries, the parents are copied and serialized without them
+    private ObjectMapper parents;
+
+    private ObjectWriter rows;
+
+    @PostConstruct
+    void init() {
+        parents = objectMapper.copy().setFilterProvider(new SimpleFilterProvider()
+                .addFilter(Channel.FILTER, SimpleBeanPropertyFilter.serializeAllExcept("videos"))
+                .addFilter(Video.FILTER, SimpleBeanPropertyFilter.serializeAllExcept("comments", "captions")));
+        // The generator is flushed when its buffer is full, not after every row
+        rows = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional(readOnly = true, isolation = Isolation.SERIALIZABLE)
+    public void exportChannel(Channel channel, OutputStream out) throws IOException {
+        try (Stream<Video> videos = videoRepository.streamForExport(channel.getId());
+             Stream<Comment> comments = commentRepository.streamForExport(channel.getId());
+             Stream<Caption> captions = captionRepository.streamForExport(channel.getId())) {
+            write(Stream.of(channel), videos, comments, captions, out);
+        }
+    }
+
+    @Transactional(readOnly = true, isolation = Isolation.SERIALIZABLE)
+    public void exportAll(OutputStream out) throws IOException {
+        try (Stream<Channel> channels = channelRepository.streamForExport();
+             Stream<Video> videos = videoRepository.streamForExport();
+             Stream<Comment> comments = commentRepository.streamForExport();
+             Stream<Caption> captions = captionRepository.streamForExport()) {
+            write(channels, videos, comments, captions, out);
+        }
+    }
+
+    private void write(Stream<Channel> channels, Stream<Video> videos, Stream<Comment> comments, Stream<Caption> captions,
+                       OutputStream out) throws IOException {
+        Children<Video> channelVideos = new Children<>(videos.iterator(), Video::getChannelId);
+        Children<Comment> videoComments = new Children<>(comments.iterator(), Comment::getVideoId);
+        Children<Caption> videoCaptions = new Children<>(captions.iterator(), Caption::getVideoId);
+        int written = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(StreamUtils.nonClosing(out)).setRootValueSeparator(null)) {
+            for (Iterator<Channel> iterator = channels.iterator(); iterator.hasNext(); ) {
+                Channel channel = iterator.next();
+                generator.writeStartObject();
+                writeFields(generator, ChannelDto.of(channel, false, false, false));
+                generator.writeArrayFieldStart("videos");
+                while (channelVideos.hasNextOf(channel.getId())) {
+                    Video video = channelVideos.next();
+                    generator.writeStartObject();
+                    writeFields(generator, VideoDto.of(video, false, false));
+                    generator.writeArrayFieldStart("comments");
+                    while (videoComments.hasNextOf(video.getId())) {
+                        rows.writeValue(generator, CommentDto.of(videoComments.next()));
+                        written = clear(written + 1);
+                    }
+                    generator.writeEndArray();
+                    generator.writeArrayFieldStart("captions");
+                    while (videoCaptions.hasNextOf(video.getId())) {
+                        rows.writeValue(generator, CaptionDto.of(videoCaptions.next()));
+                        written = clear(written + 1);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    written = clear(written + 1);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                written = clear(written + 1);
+            }
+        }
+        if (channelVideos.hasNext() || videoComments.hasNext() || videoCaptions.hasNext()) {
+            log.warn("Export ended before the rows of some videos, comments or captions, whose parents were not read");
+        }
+    }
+
+    private void writeFields(JsonGenerator generator, Object parent) throws IOException {
+        JsonNode node = parents.valueToTree(parent);
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
+    }
+
+    // The written rows are detached so that the persistence context does not grow with the export
+    private int clear(int written) {
+        if (written < CLEAR_INTERVAL) {
+            return written;
+        }
+        entityManager.clear();
+        return 0;
+    }
+
+    // The rows of a query sorted by their parent, consumed one parent after the other
+    private static class Children<T> {
+
+        private final Iterator<T> rows;
+
+        private final Function<T, String> parentId;
+
+        private T next;
+
+        Children(Iterator<T> rows, Function<T, String> parentId) {
+            this.rows = rows;
+            this.parentId = parentId;
+        }
+
+        boolean hasNextOf(String parent) {
+            if (next == null && rows.hasNext()) {
+                next = rows.next();
+            }
+            return next != null && Objects.equals(parentId.apply(next), parent);
+        }
+
+        boolean hasNext() {
+            return next != null || rows.hasNext();
+        }
+
+        T next() {
+            T row = next;
+            next = null;
+            return row;
+        }
+    }
+}
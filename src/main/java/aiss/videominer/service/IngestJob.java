@@ -0,0 +1,104 @@
+package aiss.videominer.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    @JsonProperty("id")
+    private final String id = UUID.randomUUID().toString();
+
+    @JsonProperty("channelId")
+    private final String channelId;
+
+    @JsonProperty("status")
+    private volatile Status status = Status.QUEUED;
+
+    @JsonProperty("total")
+    private final int total;
+
+    @JsonProperty("stored")
+    private volatile int stored;
+
+    @JsonProperty("error")
+    private volatile String error;
+
+    @JsonProperty("submittedAt")
+    private final Instant submittedAt = Instant.now();
+
+    @JsonProperty("startedAt")
+    private volatile Instant startedAt;
+
+    @JsonProperty("finishedAt")
+    private volatile Instant finishedAt;
+
+    // total is the number of videos of the job
+    public IngestJob(String channelId, int total) {
+        this.channelId = channelId;
+        this.total = total;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getStored() {
+        return stored;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void stored(int count) {
+        stored += count;
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    // The job runs in one transaction, so the videos reported as stored were rolled back with it
+    void failed(String message) {
+        stored = 0;
+        error = message;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,140 @@
+package aiss.videominer.service;
+
+import aiss.videominer.exception.IngestQueueFullException;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Video;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs the ingestion of posted channels and videos outside of the request thread. The work is done by a fixed number
+ * of worker threads fed by a bounded queue: when the queue is full the submission
+ * is refused, so the callers are told to come back later instead of piling up requests in memory.
+ */
+@Service
+public class IngestJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestJobService.class);
+
+    @Autowired
+    ChannelIngestService channelIngestService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.ingest.workers:4}")
+    int workers;
+
+    @Value("${videominer.ingest.queue-capacity:100}")
+    int queueCapacity;
+
+    @Value("${videominer.ingest.chunk-size:50}")
+    int chunkSize;
+
+    @Value("${videominer.ingest.retry-after:30s}")
+    Duration retryAfter;
+
+    @Value("${videominer.ingest.job-retention:1h}")
+    Duration jobRetention;
+
+    private ThreadPoolExecutor executor;
+
+    private Cache<String, IngestJob> jobs;
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("ingest-"));
+        jobs = Caffeine.newBuilder()
+                .expireAfter(new Retention(jobRetention.toNanos()))
+                .build();
+        meterRegistry.gauge("videominer.ingest.queue", executor.getQueue(), Collection::size);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public IngestJob submit(Channel channel) {
+        IngestJob job = new IngestJob(channel.getId(), channel.getVideos().size());
+        return submit(job, () -> channelIngestService.ingest(channel, chunkSize, job::stored));
+    }
+
+    public IngestJob submit(String channelId, Video video) {
+        IngestJob job = new IngestJob(channelId, 1);
+        return submit(job, () -> {
+            channelIngestService.ingestVideos(channelId, List.of(video));
+            job.stored(1);
+        });
+    }
+
+    public IngestJob find(String id) {
+        return jobs.getIfPresent(id);
+    }
+
+    private IngestJob submit(IngestJob job, Runnable work) {
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            throw new IngestQueueFullException(retryAfter);
+        }
+        return job;
+    }
+
+    private void run(IngestJob job, Runnable work) {
+        job.started();
+        try {
+            work.run();
+            job.completed();
+        } catch (Throwable e) {
+            log.warn("Ingest job {} of channel {} failed", job.getId(), job.getChannelId(), e);
+            job.failed(e.getMessage());
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            // Put again so that the retention is counted from the end of the job
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    // The jobs are kept while they are queued or running, then for the retention once they are finished
+    private record Retention(long nanos) implements Expiry<String, IngestJob> {
+
+        @Override
+        public long expireAfterCreate(String id, IngestJob job, long currentTime) {
+            return job.getFinishedAt() == null ? Long.MAX_VALUE : nanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, IngestJob job, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, job, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, IngestJob job, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
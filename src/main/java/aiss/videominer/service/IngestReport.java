@@ -0,0 +1,47 @@
+package aiss.videominer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IngestReport {
+
+    // Only the first errors are kept, so a stream of invalid records does not fill the memory
+    private static final int MAX_ERRORS = 1000;
+
+    @JsonProperty("accepted")
+    private long accepted;
+
+    @JsonProperty("rejected")
+    private long rejected;
+
+    @JsonProperty("errors")
+    private final List<RecordError> errors = new ArrayList<>();
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    public void accepted(long count) {
+        accepted += count;
+    }
+
+    public void rejected(long index, String id, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RecordError(index, id, message));
+        }
+    }
+
+    public record RecordError(@JsonProperty("index") long index, @JsonProperty("id") String id, @JsonProperty("message") String message) {
+    }
+}
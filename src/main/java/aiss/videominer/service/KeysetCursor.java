@@ -0,0 +1,95 @@
+package aiss.videominer.service;
+
+import aiss.videominer.exception.BadRequestCursor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+ * Opaque cursors for the after parameter of the list endpoints. A cursor holds the order it was issued for and the
+ * values of the sort key and id of the last row returned, so the next page is read with a seek predicate on them
+ * instead of skipping every earlier row.
+ */
+public final class KeysetCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(DeserializationFeature.USE_LONG_FOR_INTS);
+
+    private KeysetCursor() {}
+
+    record Payload(String order, Map<String, Object> keys) {}
+
+    // The id is always the last sort key, so that rows sharing the same value of the order attribute are not skipped
+    public static Sort sort(String order) {
+        if (order == null) {
+            return Sort.by("id");
+        }
+        Sort sort = order.startsWith("-") ? Sort.by(order.substring(1)).descending() : Sort.by(order).ascending();
+        return sort.getOrderFor("id") == null ? sort.and(Sort.by("id")) : sort;
+    }
+
+    // An empty cursor starts at the first row. The keys are read back as the types of the attributes of the entity, so
+    // that a Long id or an Instant time binds to the seek predicate
+    public static ScrollPosition decode(String cursor, String order, Class<?> type) throws BadRequestCursor {
+        if (cursor.isEmpty()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            Payload payload = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), Payload.class);
+            if (!Objects.equals(payload.order(), order) || payload.keys() == null || payload.keys().isEmpty()) {
+                throw new BadRequestCursor();
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> key : payload.keys().entrySet()) {
+                Field field = ReflectionUtils.findField(type, key.getKey());
+                if (field == null) {
+                    throw new BadRequestCursor();
+                }
+                keys.put(key.getKey(), MAPPER.convertValue(key.getValue(), field.getType()));
+            }
+            return ScrollPosition.forward(keys);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadRequestCursor();
+        }
+    }
+
+    public static HttpHeaders headers(Window<?> window, String order) {
+        if (window.hasNext() && !window.isEmpty()) {
+            return headers(Optional.of(((KeysetScrollPosition) window.positionAt(window.size() - 1)).getKeys()), order);
+        }
+        return new HttpHeaders();
+    }
+
+    // The cursor of the rows following the ones whose last sort keys are given, none if they are the last rows
+    public static HttpHeaders headers(Optional<Map<String, Object>> lastKeys, String order) {
+        HttpHeaders headers = new HttpHeaders();
+        if (lastKeys.isPresent()) {
+            try {
+                byte[] json = MAPPER.writeValueAsBytes(new Payload(order, lastKeys.get()));
+                headers.set(NEXT_CURSOR_HEADER, Base64.getUrlEncoder().withoutPadding().encodeToString(json));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return headers;
+    }
+}
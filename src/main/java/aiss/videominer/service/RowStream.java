@@ -0,0 +1,51 @@
+package aiss.videominer.service;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/*
+ * Body of a list response that is read from the database while it is written, instead of being collected into a List
+ * first. The rows are handed to the writer one by one, see RowStreamHttpMessageConverter, so the memory used does not
+ * grow with the size of the page.
+ */
+public final class RowStream<T> {
+
+    @FunctionalInterface
+    public interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Source<T> {
+        void forEach(RowWriter<? super T> writer) throws IOException;
+    }
+
+    private final Source<T> source;
+
+    private FilterProvider filters;
+
+    public RowStream(Source<T> source) {
+        this.source = source;
+    }
+
+    // The Jackson filters of the rows, as a MappingJacksonValue would set them
+    public RowStream<T> filters(FilterProvider filters) {
+        this.filters = filters;
+        return this;
+    }
+
+    // The rows converted while they are read, before they are detached, see Dtos
+    public <R> RowStream<R> map(Function<? super T, ? extends R> mapper) {
+        return new RowStream<R>(writer -> source.forEach(row -> writer.write(mapper.apply(row)))).filters(filters);
+    }
+
+    public FilterProvider getFilters() {
+        return filters;
+    }
+
+    public void forEach(RowWriter<? super T> writer) throws IOException {
+        source.forEach(writer);
+    }
+}
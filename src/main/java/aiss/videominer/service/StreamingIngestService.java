@@ -0,0 +1,128 @@
+package aiss.videominer.service;
+
+import aiss.videominer.config.JacksonConfig;
+import aiss.videominer.model.Video;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Reads videos one by one from a NDJSON stream or a JSON array with the Jackson streaming parser and stores them in
+ * chunks of a fixed number of videos, so the memory used does not depend on the size of the upload. CBOR and Smile
+ * bodies, a sequence of videos or an array of them, are read the same way with the mappers of their HTTP converters.
+ */
+@Service
+public class StreamingIngestService {
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    @Autowired
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    ChannelIngestService channelIngestService;
+
+    @Value("${videominer.ingest.chunk-size:50}")
+    int chunkSize;
+
+    public IngestReport ingestVideos(String channelId, MediaType contentType, InputStream body) throws IOException {
+        ObjectMapper mapper = mapper(contentType);
+        IngestReport report = new IngestReport();
+        List<Video> chunk = new ArrayList<>(chunkSize);
+        List<Long> indexes = new ArrayList<>(chunkSize);
+        long index = 0;
+        try (MappingIterator<Video> videos = mapper.readerFor(Video.class).readValues(body)) {
+            while (true) {
+                Video video;
+                try {
+                    if (!videos.hasNextValue()) {
+                        break;
+                    }
+                    video = videos.nextValue();
+                } catch (JsonParseException e) {
+                    // The rest of the stream cannot be read
+                    report.rejected(index, null, "Malformed " + mapper.getFactory().getFormatName() + ": " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    // The iterator skips the rest of the record and goes on with the next one
+                    report.rejected(index++, null, e.getOriginalMessage());
+                    continue;
+                }
+                String error = validate(video);
+                if (error != null) {
+                    report.rejected(index++, video.getId(), error);
+                    continue;
+                }
+                chunk.add(video);
+                indexes.add(index++);
+                if (chunk.size() == chunkSize) {
+                    store(channelId, chunk, indexes, report);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            store(channelId, chunk, indexes, report);
+        }
+        return report;
+    }
+
+    private ObjectMapper mapper(MediaType contentType) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(contentType)) {
+            return cborHttpMessageConverter.getObjectMapper();
+        }
+        if (JacksonConfig.APPLICATION_SMILE.isCompatibleWith(contentType)) {
+            return smileHttpMessageConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    private String validate(Video video) {
+        if (video.getId() == null) {
+            return "Id in the body request cannot be null";
+        }
+        Set<ConstraintViolation<Video>> violations = validator.validate(video);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private void store(String channelId, List<Video> chunk, List<Long> indexes, IngestReport report) {
+        try {
+            channelIngestService.ingestVideos(channelId, chunk);
+            report.accepted(chunk.size());
+        } catch (RuntimeException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                report.rejected(indexes.get(i), chunk.get(i).getId(), "Could not be stored: " + e.getMessage());
+            }
+        }
+        chunk.clear();
+        indexes.clear();
+    }
+}
@@ -0,0 +1,89 @@
+package aiss.videominer.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/*
+ * Totals of the list endpoints, only computed when a client asks for them with total=true. The count of each filter
+ * is kept in memory and refreshed in the background once it is older than the refresh interval, so the value returned
+ * is an estimate that may lag behind the last writes.
+ */
+@Component
+public class TotalEstimates {
+
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${videominer.total-estimate.max-size:1000}")
+    long maxSize;
+
+    @Value("${videominer.total-estimate.refresh:30s}")
+    Duration refresh;
+
+    @Value("${videominer.total-estimate.ttl:10m}")
+    Duration ttl;
+
+    private LoadingCache<Query, Long> estimates;
+
+    /*
+     * The key of an estimate with the count query that computes it, so that the loader can run it the first time and
+     * again on each background refresh. Only the key takes part in the identity: the queries of the same key count the
+     * same rows.
+     */
+    record Query(String key, LongSupplier count) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Query query && key.equals(query.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        estimates = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refresh)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build(query -> query.count().getAsLong());
+        CaffeineCacheMetrics.monitor(meterRegistry, estimates, "totals");
+    }
+
+    public long estimate(String key, LongSupplier count) {
+        return estimates.get(new Query(key, count));
+    }
+
+    // Headers of a list response, with the X-Total-Count estimate only when the client asked for it
+    public HttpHeaders headers(boolean total, String key, LongSupplier count) {
+        HttpHeaders headers = new HttpHeaders();
+        if (total) {
+            headers.set(TOTAL_COUNT_HEADER, String.valueOf(estimate(key, count)));
+        }
+        return headers;
+    }
+
+    // Key of a list endpoint and the values of its filter parameters, absent filters included so that keys do not clash
+    public static String key(String resource, Object... filters) {
+        return resource + Arrays.stream(filters).map(Objects::toString).collect(Collectors.joining("|", "?", ""));
+    }
+}
@@ -0,0 +1,82 @@
+package aiss.videominer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class UpsertSummary {
+
+    @JsonProperty("channel")
+    private final Counts channel = new Counts();
+
+    @JsonProperty("videos")
+    private final Counts videos = new Counts();
+
+    @JsonProperty("comments")
+    private final Counts comments = new Counts();
+
+    @JsonProperty("captions")
+    private final Counts captions = new Counts();
+
+    public Counts getChannel() {
+        return channel;
+    }
+
+    public Counts getVideos() {
+        return videos;
+    }
+
+    public Counts getComments() {
+        return comments;
+    }
+
+    public Counts getCaptions() {
+        return captions;
+    }
+
+    public static class Counts {
+
+        @JsonProperty("inserted")
+        private long inserted;
+
+        @JsonProperty("updated")
+        private long updated;
+
+        @JsonProperty("unchanged")
+        private long unchanged;
+
+        @JsonProperty("removed")
+        private long removed;
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        void inserted(long count) {
+            inserted += count;
+        }
+
+        // Counts the row as updated or unchanged
+        void compared(boolean changed) {
+            if (changed) {
+                updated++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        void removed() {
+            removed++;
+        }
+    }
+}
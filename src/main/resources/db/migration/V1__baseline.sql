@@ -0,0 +1,63 @@
+-- Schema created by ddl-auto=update before the migrations, with the times stored as text. A database created that way
+-- is baselined at this version and only upgraded by the next ones.
+
+create sequence vmuser_seq start with 1 increment by 50;
+
+create table vmuser (
+    id bigint not null,
+    name varchar(255),
+    picture_link varchar(255),
+    user_link varchar(255),
+    primary key (id)
+);
+
+create table channel (
+    id varchar(255) not null,
+    name varchar(255),
+    description TEXT,
+    created_time varchar(255),
+    primary key (id)
+);
+
+create table video (
+    id varchar(255) not null,
+    name varchar(255),
+    description TEXT,
+    release_time varchar(255),
+    channel_id varchar(255),
+    primary key (id)
+);
+
+create table comment (
+    id varchar(255) not null,
+    text TEXT,
+    created_on varchar(255),
+    author_id bigint not null unique,
+    video_id varchar(255),
+    primary key (id)
+);
+
+create table caption (
+    id varchar(255) not null,
+    name varchar(255),
+    language varchar(255),
+    video_id varchar(255),
+    primary key (id)
+);
+
+create table token (
+    id varchar(255) not null,
+    primary key (id)
+);
+
+-- The children are read by parent for the sub-resources, the batch loading of the collections and the cascades. The
+-- indexes come before the foreign keys so that H2 uses them for the constraints instead of creating its own, the
+-- author of a comment is indexed by its unique constraint.
+create index idx_video_channel on video (channel_id);
+create index idx_comment_video on comment (video_id);
+create index idx_caption_video on caption (video_id);
+
+alter table video add constraint fk_video_channel foreign key (channel_id) references channel;
+alter table comment add constraint fk_comment_author foreign key (author_id) references vmuser;
+alter table comment add constraint fk_comment_video foreign key (video_id) references video;
+alter table caption add constraint fk_caption_video foreign key (video_id) references video;
@@ -0,0 +1,9 @@
+-- The ISO-8601 texts are cast to timestamps, a schema that already has them is left as it is
+
+alter table channel alter column created_time set data type timestamp(6) with time zone;
+alter table channel alter column created_time set not null;
+
+alter table video alter column release_time set data type timestamp(6) with time zone;
+alter table video alter column release_time set not null;
+
+alter table comment alter column created_on set data type timestamp(6) with time zone;
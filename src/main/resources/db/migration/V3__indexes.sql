@@ -0,0 +1,17 @@
+-- Indexes of the filters and orders of the list endpoints. The ones created by ddl-auto=update on a schema baselined
+-- at version 1 keep their name and are not created twice.
+
+-- Equality and prefix filters and the order by name, the id keeps rows of the same name in cursor order
+create index if not exists idx_channel_name on channel (name, id);
+create index if not exists idx_video_name on video (name, id);
+create index if not exists idx_caption_name on caption (name, id);
+create index if not exists idx_caption_language on caption (language, id);
+create index if not exists idx_vmuser_name on vmuser (name, id);
+
+-- Time ranges and the order by time. H2 only reads an index forwards, the newest first order has its own
+create index if not exists idx_channel_created on channel (created_time, id);
+create index if not exists idx_channel_created_desc on channel (created_time desc, id desc);
+create index if not exists idx_video_release on video (release_time, id);
+create index if not exists idx_video_release_desc on video (release_time desc, id desc);
+create index if not exists idx_comment_created on comment (created_on, id);
+create index if not exists idx_comment_created_desc on comment (created_on desc, id desc);
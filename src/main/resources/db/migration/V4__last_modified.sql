@@ -0,0 +1,6 @@
+-- Validator of the conditional GETs, the rows stored before start as modified now
+
+alter table channel add column last_modified timestamp(6) with time zone default current_timestamp not null;
+alter table video add column last_modified timestamp(6) with time zone default current_timestamp not null;
+alter table comment add column last_modified timestamp(6) with time zone default current_timestamp not null;
+alter table caption add column last_modified timestamp(6) with time zone default current_timestamp not null;
@@ -0,0 +1,36 @@
+package aiss.videominer.benchmark;
+
+import aiss.videominer.model.Caption;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import aiss.videominer.model.Video;
+
+import java.time.Instant;
+
+/*
+ * The channels the benchmarks are run on: every id starts with the prefix, so that several channels can be stored in
+ * the same database, and every comment has its own author, whose id is left for the database to generate.
+ */
+final class BenchmarkChannels {
+
+    private static final Instant CREATED = Instant.parse("2024-01-01T00:00:00Z");
+
+    private BenchmarkChannels() {}
+
+    static Channel channel(String prefix, int videos, int commentsPerVideo, int captionsPerVideo) {
+        Channel channel = new Channel(prefix, "Channel " + prefix, "Benchmark channel", CREATED);
+        for (int v = 0; v < videos; v++) {
+            Video video = new Video(prefix + "-v" + v, "Video " + v, "Benchmark video number " + v, CREATED);
+            for (int c = 0; c < commentsPerVideo; c++) {
+                User author = new User("user" + c, "https://example.com/u/" + c, "https://example.com/p/" + c);
+                video.getComments().add(new Comment(prefix + "-v" + v + "-c" + c, "Comment text " + c, CREATED.plusSeconds(c), author));
+            }
+            for (int c = 0; c < captionsPerVideo; c++) {
+                video.getCaptions().add(new Caption(prefix + "-v" + v + "-cp" + c, "en", "Caption " + c));
+            }
+            channel.getVideos().add(video);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,61 @@
+package aiss.videominer.benchmark;
+
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Video;
+import aiss.videominer.repository.ChannelRepository;
+import aiss.videominer.service.ChannelIngestService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the cascade merge done by ChannelRepository.save with the batched ChannelIngestService on a channel with
+ * 100 videos of 1000 comments each. Run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ChannelIngestBenchmarkTests {
+
+    private static final int VIDEOS = 100;
+
+    private static final int COMMENTS_PER_VIDEO = 1000;
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @Autowired
+    ChannelIngestService channelIngestService;
+
+    @Test
+    void ingestChannelWith100kComments() {
+        // Warm up both paths
+        channelRepository.save(channel("warmup-merge", 2, 100));
+        channelIngestService.ingest(channel("warmup-batch", 2, 100));
+
+        long merge = time(() -> channelRepository.save(channel("merge", VIDEOS, COMMENTS_PER_VIDEO)));
+        long batch = time(() -> channelIngestService.ingest(channel("batch", VIDEOS, COMMENTS_PER_VIDEO)));
+
+        long rows = 1 + VIDEOS + 2L * VIDEOS * COMMENTS_PER_VIDEO;
+        System.out.printf("cascade merge: %d ms (%d rows/s)%n", merge, rows * 1000 / Math.max(merge, 1));
+        System.out.printf("batched ingest: %d ms (%d rows/s)%n", batch, rows * 1000 / Math.max(batch, 1));
+        System.out.printf("speedup: %.1fx%n", (double) merge / Math.max(batch, 1));
+    }
+
+    private static long time(Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static Channel channel(String prefix, int videos, int commentsPerVideo) {
+        Channel channel = BenchmarkChannels.channel(prefix, videos, commentsPerVideo, 0);
+        // The merge path needs the foreign keys set as well, the ingest service sets them itself
+        for (Video video : channel.getVideos()) {
+            ChannelIngestService.link(channel.getId(), video);
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,75 @@
+package aiss.videominer.benchmark;
+
+import aiss.videominer.model.Channel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Compares the size of a channel with 20 videos of 500 comments and 5 captions each, and the time taken to write and
+ * read it, as JSON, CBOR and Smile, with the mappers of the HTTP converters. Run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class MediaTypeBenchmarkTests {
+
+    private static final int VIDEOS = 20;
+
+    private static final int COMMENTS_PER_VIDEO = 500;
+
+    private static final int CAPTIONS_PER_VIDEO = 5;
+
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    @Autowired
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+
+    @Test
+    void channelAsJsonCborAndSmile() throws Exception {
+        Channel channel = BenchmarkChannels.channel("bench", VIDEOS, COMMENTS_PER_VIDEO, CAPTIONS_PER_VIDEO);
+        byte[] json = measure("json", objectMapper, channel, null);
+        measure("cbor", cborHttpMessageConverter.getObjectMapper(), channel, json);
+        measure("smile", smileHttpMessageConverter.getObjectMapper(), channel, json);
+    }
+
+    private byte[] measure(String format, ObjectMapper mapper, Channel channel, byte[] json) throws Exception {
+        byte[] body = mapper.writeValueAsBytes(channel);
+        // Warm up both directions
+        for (int i = 0; i < ROUNDS; i++) {
+            mapper.readValue(mapper.writeValueAsBytes(channel), Channel.class);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            mapper.writeValueAsBytes(channel);
+        }
+        long write = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ROUNDS;
+
+        Channel read = null;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            read = mapper.readValue(body, Channel.class);
+        }
+        long parse = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ROUNDS;
+
+        // The same channel is read back whatever the format
+        assertEquals(objectMapper.writeValueAsString(channel), objectMapper.writeValueAsString(read));
+        System.out.printf("%s: %d bytes%s, write %d us, read %d us%n", format, body.length,
+                json == null ? "" : String.format(" (%.0f%% of json)", 100.0 * body.length / json.length), write, parse);
+        return body;
+    }
+}
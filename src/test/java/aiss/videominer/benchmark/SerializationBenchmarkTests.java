@@ -0,0 +1,93 @@
+package aiss.videominer.benchmark;
+
+import aiss.videominer.dto.ChannelDto;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.Video;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Compares the time and the memory allocated to write a channel with 20 videos of 500 comments and 5 captions each:
+ * the entities with a mapper without Blackbird, as the responses were written before, the records with the same mapper
+ * and the records with the mapper of the application. Run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class SerializationBenchmarkTests {
+
+    private static final int VIDEOS = 20;
+
+    private static final int COMMENTS_PER_VIDEO = 500;
+
+    private static final int CAPTIONS_PER_VIDEO = 5;
+
+    private static final int ROUNDS = 200;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void entitiesAgainstRecords() throws Exception {
+        ObjectMapper reflective = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false))
+                .build();
+        Channel channel = channel();
+        ChannelDto dto = ChannelDto.of(channel);
+        assertEquals(reflective.writeValueAsString(channel), objectMapper.writeValueAsString(dto));
+
+        long entities = measure("entities, reflection", () -> write(reflective, channel));
+        measure("records, reflection", () -> write(reflective, dto));
+        long records = measure("records, blackbird", () -> write(objectMapper, dto));
+        measure("copy to records", () -> ChannelDto.of(channel));
+        System.out.printf("speedup: %.1fx%n", (double) entities / Math.max(records, 1));
+    }
+
+    // The body is discarded, so that only the serializers are measured
+    private static Object write(ObjectMapper mapper, Object body) throws Exception {
+        mapper.writeValue(OutputStream.nullOutputStream(), body);
+        return body;
+    }
+
+    private static long measure(String name, Callable<?> write) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ROUNDS; i++) {
+            write.call();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            write.call();
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ROUNDS;
+        allocated = (threads.getCurrentThreadAllocatedBytes() - allocated) / ROUNDS;
+        System.out.printf("%s: %d us, %d KB allocated per write%n", name, micros, allocated / 1024);
+        return micros;
+    }
+
+    // The authors get ids, as the stored ones have
+    private static Channel channel() {
+        Channel channel = BenchmarkChannels.channel("bench", VIDEOS, COMMENTS_PER_VIDEO, CAPTIONS_PER_VIDEO);
+        long id = 0;
+        for (Video video : channel.getVideos()) {
+            for (Comment comment : video.getComments()) {
+                comment.getAuthor().setId(++id);
+            }
+        }
+        return channel;
+    }
+}
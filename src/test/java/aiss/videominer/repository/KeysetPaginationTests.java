@@ -0,0 +1,95 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.model.Comment;
+import aiss.videominer.service.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Reads the comments of a video page after page with the cursors, on an order whose attribute is null in some rows:
+ * every row is returned once, in the order of the database, which sorts the nulls first when ascending and last when
+ * descending. The rows are rolled back after each test.
+ */
+@SpringBootTest
+@Transactional
+class KeysetPaginationTests {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    StreamingQueries streamingQueries;
+
+    @BeforeEach
+    void fill() {
+        jdbcTemplate.update("insert into channel (id, name, created_time) values ('c1', 'channel', timestamp with time zone '2024-01-01 00:00:00Z')");
+        jdbcTemplate.update("insert into video (id, name, release_time, channel_id) values ('v1', 'video', timestamp with time zone '2024-01-01 00:00:00Z', 'c1')");
+        jdbcTemplate.update("insert into vmuser select x, 'user ' || x, null, null from system_range(1, 7)");
+        // Comments 1, 4 and 6 have no time
+        jdbcTemplate.update("insert into comment (id, text, created_on, author_id, video_id) select 'cm' || x, 'text', " +
+                "case when mod(x, 3) = 1 and x <> 7 or x = 6 then null else timestamp with time zone '2024-01-01 00:00:00Z' + mod(x, 2) * interval '1' day end, x, 'v1' from system_range(1, 7)");
+    }
+
+    @Test
+    void nullKeysAreNotSkipped() {
+        List<String> ascending = List.of("cm1", "cm4", "cm6", "cm2", "cm3", "cm5", "cm7");
+        List<String> descending = List.of("cm3", "cm5", "cm7", "cm2", "cm1", "cm4", "cm6");
+        for (int size = 1; size <= 3; size++) {
+            assertEquals(ascending, windows("createdOn", size));
+            assertEquals(descending, windows("-createdOn", size));
+            assertEquals(ascending, streamed("createdOn", size));
+            assertEquals(descending, streamed("-createdOn", size));
+        }
+    }
+
+    private List<String> windows(String order, int size) {
+        Sort sort = KeysetCursor.sort(order);
+        List<String> ids = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        Window<Comment> window;
+        do {
+            window = commentRepository.findByVideoId("v1", position, size, sort);
+            window.forEach(comment -> ids.add(comment.getId()));
+            position = window.isEmpty() ? position : window.positionAt(window.size() - 1);
+        } while (window.hasNext());
+        return ids;
+    }
+
+    // The pages of the list endpoint, each read up to the last keys of the page
+    private List<String> streamed(String order, int size) {
+        Sort sort = KeysetCursor.sort(order);
+        List<String> ids = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        while (true) {
+            Optional<Map<String, Object>> lastKeys = streamingQueries.lastKeys(Comment.class, Filters.<Comment>all(), position, size, sort);
+            try {
+                streamingQueries.after(Comment.class, Filters.<Comment>all(), position, lastKeys, size, sort).forEach(comment -> ids.add(comment.getId()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            if (lastKeys.isEmpty()) {
+                return ids;
+            }
+            position = ScrollPosition.forward(lastKeys.get());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package aiss.videominer.repository;
+
+import aiss.videominer.cache.ResponseCache;
+import aiss.videominer.model.Channel;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import aiss.videominer.model.Video;
+import aiss.videominer.service.ChannelIngestService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Pins the chain of lastModified touches of LastModifiedListener: a comment touches its video and channel, a user the
+ * comment it wrote and up, and a comment moved to another video both videos. The changes are committed, since the
+ * parents are touched just before the commit, and deleted after each test.
+ */
+@SpringBootTest
+class LastModifiedPropagationTests {
+
+    @Autowired
+    ChannelIngestService channelIngestService;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    ResponseCache responseCache;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void store() {
+        Channel channel = new Channel("lm-c", "channel", null, Instant.parse("2024-01-01T00:00:00Z"));
+        Video first = new Video("lm-v1", "first", null, Instant.parse("2024-01-01T00:00:00Z"));
+        first.getComments().add(new Comment("lm-cm", "text", Instant.parse("2024-01-02T00:00:00Z"), new User("bob", null, null)));
+        Video second = new Video("lm-v2", "second", null, Instant.parse("2024-01-01T00:00:00Z"));
+        channel.getVideos().addAll(List.of(first, second));
+        channelIngestService.ingest(channel);
+    }
+
+    @AfterEach
+    void delete() {
+        Long author = jdbcTemplate.queryForObject("select author_id from comment where id = 'lm-cm'", Long.class);
+        jdbcTemplate.update("delete from comment where id = 'lm-cm'");
+        jdbcTemplate.update("delete from vmuser where id = ?", author);
+        jdbcTemplate.update("delete from video where channel_id = 'lm-c'");
+        jdbcTemplate.update("delete from channel where id = 'lm-c'");
+    }
+
+    @Test
+    void commentTouchesItsVideoAndChannel() {
+        Map<String, OffsetDateTime> before = lastModified();
+        commit(comment -> comment.setText("changed"));
+        Map<String, OffsetDateTime> after = lastModified();
+
+        assertTouched(before, after, "comment", "lm-v1", "lm-c");
+        assertEquals(before.get("lm-v2"), after.get("lm-v2"));
+    }
+
+    @Test
+    void userTouchesItsCommentAndUp() {
+        Map<String, OffsetDateTime> before = lastModified();
+        commit(comment -> comment.getAuthor().setName("ann"));
+        Map<String, OffsetDateTime> after = lastModified();
+
+        assertTouched(before, after, "comment", "lm-v1", "lm-c");
+        assertEquals(before.get("lm-v2"), after.get("lm-v2"));
+    }
+
+    @Test
+    void movedCommentTouchesBothVideos() {
+        Map<String, OffsetDateTime> before = lastModified();
+        commit(comment -> comment.setVideoId("lm-v2"));
+        Map<String, OffsetDateTime> after = lastModified();
+
+        assertTouched(before, after, "comment", "lm-v1", "lm-v2", "lm-c");
+    }
+
+    // The touch of the video is not a change of the lists that show videos but not comments
+    @Test
+    void touchesLeaveTheCachedResponsesOfTheParents() {
+        long captions = responseCache.key("/videoMiner/v1/videos/lm-v1/captions", Map.of(), null).generation();
+        long comments = responseCache.key("/videoMiner/v1/videos/lm-v1/comments", Map.of(), null).generation();
+        commit(comment -> comment.setText("changed"));
+
+        assertEquals(captions, responseCache.key("/videoMiner/v1/videos/lm-v1/captions", Map.of(), null).generation());
+        assertNotEquals(comments, responseCache.key("/videoMiner/v1/videos/lm-v1/comments", Map.of(), null).generation());
+    }
+
+    private void commit(Consumer<Comment> change) {
+        // The timestamps of the touches have to differ from the ones of the insert
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> change.accept(commentRepository.findById("lm-cm").orElseThrow()));
+    }
+
+    private Map<String, OffsetDateTime> lastModified() {
+        return Map.of(
+                "comment", jdbcTemplate.queryForObject("select last_modified from comment where id = 'lm-cm'", OffsetDateTime.class),
+                "lm-v1", jdbcTemplate.queryForObject("select last_modified from video where id = 'lm-v1'", OffsetDateTime.class),
+                "lm-v2", jdbcTemplate.queryForObject("select last_modified from video where id = 'lm-v2'", OffsetDateTime.class),
+                "lm-c", jdbcTemplate.queryForObject("select last_modified from channel where id = 'lm-c'", OffsetDateTime.class));
+    }
+
+    private static void assertTouched(Map<String, OffsetDateTime> before, Map<String, OffsetDateTime> after, String... rows) {
+        for (String row : rows) {
+            assertTrue(after.get(row).isAfter(before.get(row)), row);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package aiss.videominer.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks with the EXPLAIN of H2 that the queries of the list endpoints and sub-resources are answered from the indexes
+ * created by the migrations, instead of a scan of the whole table. The plans are costed on the row counts, so the
+ * tables are filled first, the rows are rolled back after each test.
+ */
+@SpringBootTest
+@Transactional
+class QueryPlanTests {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    IndexAdvisor indexAdvisor;
+
+    @BeforeEach
+    void fill() {
+        jdbcTemplate.update("insert into vmuser select x, 'user ' || x, null, null from system_range(1, 10000)");
+        jdbcTemplate.update("insert into channel (id, name, description, created_time) select 'c' || x, 'channel ' || x, null, timestamp with time zone '2024-01-01 00:00:00Z' + x * interval '1' hour from system_range(1, 100)");
+        jdbcTemplate.update("insert into video (id, name, description, release_time, channel_id) select 'v' || x, 'video ' || x, null, timestamp with time zone '2024-01-01 00:00:00Z' + x * interval '1' minute, 'c' || (mod(x, 100) + 1) from system_range(1, 1000)");
+        jdbcTemplate.update("insert into comment (id, text, created_on, author_id, video_id) select 'cm' || x, 'text', timestamp with time zone '2024-01-01 00:00:00Z' + x * interval '1' second, x, 'v' || (mod(x, 1000) + 1) from system_range(1, 10000)");
+        jdbcTemplate.update("insert into caption (id, name, language, video_id) select 'cp' || x, 'caption ' || x, 'en', 'v' || (mod(x, 1000) + 1) from system_range(1, 1000)");
+    }
+
+    @Test
+    void subResourcesSeekTheirParent() {
+        assertUses("IDX_VIDEO_CHANNEL", "select * from video v where v.channel_id = 'c1' order by v.id fetch first 10 rows only");
+        assertUses("IDX_COMMENT_VIDEO", "select * from comment c where c.video_id = 'v1' order by c.id fetch first 10 rows only");
+        assertUses("IDX_CAPTION_VIDEO", "select * from caption c where c.video_id = 'v1' order by c.id fetch first 10 rows only");
+    }
+
+    @Test
+    void authorsOfAVideoAreReadFromTheirComments() {
+        String plan = explain("select * from vmuser u where u.id in (select c.author_id from comment c where c.video_id = 'v1') order by u.id fetch first 10 rows only");
+        assertTrue(plan.contains("IDX_COMMENT_VIDEO"), plan);
+    }
+
+    @Test
+    void filtersUseTheirIndex() {
+        assertUses("IDX_VIDEO_NAME", "select * from video v where v.name = 'name' order by v.id fetch first 10 rows only");
+        assertUses("IDX_CHANNEL_NAME", "select * from channel c where c.name like 'prefix%' escape '\\' order by c.id fetch first 10 rows only");
+        assertUses("IDX_CAPTION_LANGUAGE", "select * from caption c where c.language = 'en' order by c.id fetch first 10 rows only");
+        assertUses("IDX_VMUSER_NAME", "select * from vmuser u where u.name = 'bob' order by u.id fetch first 10 rows only");
+        assertUses("IDX_COMMENT_CREATED", "select * from comment c where c.created_on >= timestamp with time zone '2024-01-01 00:00:00Z' and c.created_on < timestamp with time zone '2024-02-01 00:00:00Z' order by c.id fetch first 10 rows only");
+    }
+
+    @Test
+    void timeOrdersAreReadFromTheIndex() {
+        assertSorted("IDX_COMMENT_CREATED", "select * from comment c order by c.created_on, c.id fetch first 10 rows only");
+        assertSorted("IDX_COMMENT_CREATED_DESC", "select * from comment c order by c.created_on desc, c.id desc fetch first 10 rows only");
+        assertSorted("IDX_VIDEO_RELEASE", "select * from video v order by v.release_time, v.id fetch first 10 rows only");
+        assertSorted("IDX_CHANNEL_CREATED", "select * from channel c order by c.created_time, c.id fetch first 10 rows only");
+        assertSorted("IDX_VIDEO_RELEASE", "select * from video v where v.release_time > timestamp with time zone '2024-01-01 00:00:00Z' or (v.release_time = timestamp with time zone '2024-01-01 00:00:00Z' and v.id > 'v1') order by v.release_time, v.id fetch first 10 rows only");
+    }
+
+    @Test
+    void everyFilterAndOrderFieldIsIndexed() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(List.of(), indexAdvisor.unindexedFields(connection.getMetaData()));
+        }
+    }
+
+    private void assertUses(String index, String query) {
+        String plan = explain(query);
+        assertTrue(plan.contains("PUBLIC." + index + ":"), plan);
+    }
+
+    private void assertSorted(String index, String query) {
+        String plan = explain(query);
+        assertTrue(plan.matches("(?s).*PUBLIC\\." + index + "[ :].*") && plan.contains("index sorted"), plan);
+    }
+
+    private String explain(String query) {
+        return jdbcTemplate.queryForObject("explain " + query, String.class);
+    }
+}
@@ -0,0 +1,88 @@
+package aiss.videominer.security;
+
+import aiss.videominer.repository.TokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Checks without the Spring context which tokens the AuthenticationFilter lets through in both token modes. The
+ * stored tokens are "x" and "vm1.a.b.c", an opaque id that has the shape of a signed token.
+ */
+class AuthenticationFilterTests {
+
+    private TokenRepository tokenRepository;
+
+    private TokenSigner tokenSigner;
+
+    private AuthenticationFilter filter;
+
+    @BeforeEach
+    void init() {
+        tokenRepository = mock(TokenRepository.class);
+        when(tokenRepository.existsById(anyString())).thenReturn(false);
+        when(tokenRepository.existsById("x")).thenReturn(true);
+        when(tokenRepository.existsById("vm1.a.b.c")).thenReturn(true);
+        TokenCache tokenCache = new TokenCache();
+        tokenCache.tokenRepository = tokenRepository;
+        tokenCache.meterRegistry = new SimpleMeterRegistry();
+        tokenCache.maxSize = 100;
+        tokenCache.ttl = Duration.ofMinutes(10);
+        tokenCache.negativeMaxSize = 100;
+        tokenCache.negativeTtl = Duration.ofSeconds(30);
+        tokenCache.init();
+        tokenSigner = new TokenSigner();
+        tokenSigner.mode = "opaque";
+        tokenSigner.secret = "secret";
+        tokenSigner.signedTtl = Duration.ofHours(1);
+        tokenSigner.init();
+        filter = new AuthenticationFilter(tokenCache, tokenSigner);
+    }
+
+    private int get(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/videoMiner/v1/channels");
+        request.addHeader(HttpHeaders.AUTHORIZATION, token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> ((MockHttpServletResponse) res).setStatus(HttpStatus.OK.value()));
+        return response.getStatus();
+    }
+
+    @Test
+    void opaqueModeLooksUpEveryToken() throws Exception {
+        assertEquals(HttpStatus.OK.value(), get("x"));
+        assertEquals(HttpStatus.OK.value(), get("vm1.a.b.c"));
+        assertEquals(HttpStatus.FORBIDDEN.value(), get("y"));
+        // Signed tokens are not accepted unless the signed mode is on
+        assertEquals(HttpStatus.FORBIDDEN.value(), get(tokenSigner.sign("alice", Instant.now().plusSeconds(60))));
+    }
+
+    @Test
+    void signedModeVerifiesSignedTokensWithoutStorage() throws Exception {
+        tokenSigner.mode = "signed";
+        String token = tokenSigner.sign("alice", Instant.now().plusSeconds(60));
+        assertEquals(HttpStatus.OK.value(), get(token));
+        verify(tokenRepository, never()).existsById(token);
+    }
+
+    @Test
+    void signedModeStillAcceptsStoredOpaqueTokens() throws Exception {
+        tokenSigner.mode = "signed";
+        assertEquals(HttpStatus.OK.value(), get("x"));
+        assertEquals(HttpStatus.OK.value(), get("vm1.a.b.c"));
+        assertEquals(HttpStatus.FORBIDDEN.value(), get("vm1.a.b.d"));
+    }
+}
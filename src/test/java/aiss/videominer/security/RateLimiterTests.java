@@ -0,0 +1,110 @@
+package aiss.videominer.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks the buckets of the RateLimiter without the Spring context: writes are limited to 10 calls per second with
+ * bursts of 3, so the next call is allowed every 100 ms once the burst is spent. The RateLimitFilter turns the wait
+ * into the Retry-After of its 429.
+ */
+class RateLimiterTests {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void init() {
+        rateLimiter = new RateLimiter();
+        rateLimiter.meterRegistry = new SimpleMeterRegistry();
+        rateLimiter.enabled = true;
+        rateLimiter.readRate = 50;
+        rateLimiter.readCapacity = 100;
+        rateLimiter.writeRate = 10;
+        rateLimiter.writeCapacity = 3;
+        rateLimiter.bulkRate = 1;
+        rateLimiter.bulkCapacity = 1;
+        rateLimiter.idleExpiry = Duration.ofHours(1);
+        rateLimiter.maxTokens = 100;
+        rateLimiter.init();
+    }
+
+    @Test
+    void allowsABurstOfTheCapacity() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("a", EndpointClass.WRITE));
+        }
+        assertTrue(rateLimiter.tryAcquire("a", EndpointClass.WRITE) > 0);
+
+        Map<String, Long> usage = rateLimiter.usage("a").get("write");
+        assertEquals(3, usage.get("allowed"));
+        assertEquals(1, usage.get("rejected"));
+    }
+
+    @Test
+    void waitIsAtMostOneIntervalAfterTheBurst() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("a", EndpointClass.WRITE);
+        }
+        long wait = rateLimiter.tryAcquire("a", EndpointClass.WRITE);
+        assertTrue(wait > 0 && wait <= INTERVAL, "wait " + wait);
+        // A rejected call does not push the next one further away
+        assertTrue(rateLimiter.tryAcquire("a", EndpointClass.WRITE) <= wait);
+    }
+
+    @Test
+    void refillsOneCallPerInterval() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("a", EndpointClass.WRITE);
+        }
+        long wait = rateLimiter.tryAcquire("a", EndpointClass.WRITE);
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(0, rateLimiter.tryAcquire("a", EndpointClass.WRITE));
+        assertTrue(rateLimiter.tryAcquire("a", EndpointClass.WRITE) > 0);
+    }
+
+    @Test
+    void bucketsAreKeptPerTokenAndEndpointClass() {
+        assertEquals(0, rateLimiter.tryAcquire("a", EndpointClass.BULK));
+        assertTrue(rateLimiter.tryAcquire("a", EndpointClass.BULK) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("b", EndpointClass.BULK));
+        assertEquals(0, rateLimiter.tryAcquire("a", EndpointClass.READ));
+        assertEquals(0, rateLimiter.tryAcquire("a", EndpointClass.WRITE));
+    }
+
+    @Test
+    void rejectionsTellWhenToRetry() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(rateLimiter);
+        assertEquals(HttpStatus.CREATED.value(), post(filter).getStatus());
+        MockHttpServletResponse rejected = post(filter);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), rejected.getStatus());
+        // One bulk call per second, rounded up to whole seconds
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    private static MockHttpServletResponse post(RateLimitFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/videoMiner/v1/channels");
+        request.setAttribute(AuthenticationFilter.VERIFIED_TOKEN, "a");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> ((MockHttpServletResponse) res).setStatus(HttpStatus.CREATED.value()));
+        return response;
+    }
+
+    @Test
+    void usageOfAnUnknownTokenIsZero() {
+        assertEquals(0, rateLimiter.usage("unknown").get("read").get("allowed"));
+    }
+}
@@ -0,0 +1,71 @@
+package aiss.videominer.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks the signed tokens without the Spring context: a token is only accepted unchanged, before its expiry and by a
+ * signer holding the secret it was signed with.
+ */
+class TokenSignerTests {
+
+    private static TokenSigner signer(String secret) {
+        TokenSigner signer = new TokenSigner();
+        signer.mode = "signed";
+        signer.secret = secret;
+        signer.signedTtl = Duration.ofHours(1);
+        signer.init();
+        return signer;
+    }
+
+    @Test
+    void acceptsItsOwnTokens() {
+        TokenSigner signer = signer("secret");
+        String token = signer.sign("alice", signer.expiration());
+        assertTrue(signer.isSigned(token));
+        assertTrue(signer.verify(token));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        TokenSigner signer = signer("secret");
+        String token = signer.sign("alice", signer.expiration());
+        String[] parts = token.split("\\.");
+
+        String otherSubject = signer.sign("bob", signer.expiration()).split("\\.")[1];
+        assertFalse(signer.verify(parts[0] + "." + otherSubject + "." + parts[2] + "." + parts[3]));
+        assertFalse(signer.verify(parts[0] + "." + parts[1] + "." + (Long.parseLong(parts[2]) + 3600) + "." + parts[3]));
+        // The last character of the signature has bits the decoder ignores, the first one has none
+        String signature = (parts[3].charAt(0) == 'A' ? 'B' : 'A') + parts[3].substring(1);
+        assertFalse(signer.verify(parts[0] + "." + parts[1] + "." + parts[2] + "." + signature));
+        assertFalse(signer.verify(parts[0] + "." + parts[1] + ".soon." + parts[3]));
+        assertFalse(signer.verify(parts[0] + "." + parts[1] + "." + parts[2] + ".not*base64"));
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        TokenSigner signer = signer("secret");
+        assertFalse(signer.verify(signer.sign("alice", Instant.now().minusSeconds(1))));
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnotherKey() {
+        String token = signer("secret").sign("alice", Instant.now().plusSeconds(3600));
+        assertFalse(signer("other secret").verify(token));
+        assertTrue(signer("secret").verify(token));
+        // Without a configured secret every signer draws its own key
+        assertFalse(signer("").verify(signer("").sign("alice", Instant.now().plusSeconds(3600))));
+    }
+
+    @Test
+    void opaqueTokensAreNotSigned() {
+        TokenSigner signer = signer("secret");
+        assertFalse(signer.isSigned("3f2a9c1e-opaque"));
+        assertFalse(signer.isSigned("vm1.a.b"));
+    }
+}
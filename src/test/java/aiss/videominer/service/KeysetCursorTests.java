@@ -0,0 +1,108 @@
+package aiss.videominer.service;
+
+import aiss.videominer.exception.BadRequestCursor;
+import aiss.videominer.model.Comment;
+import aiss.videominer.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks the cursors of the list endpoints without the Spring context: the keys come back with the types of the
+ * entity, and a cursor of another order or that cannot be read is answered with a 400.
+ */
+class KeysetCursorTests {
+
+    // The cursor issued after a page whose last row has the keys
+    private static String encode(Map<String, Object> keys, String order) {
+        Window<Object> window = Window.from(List.of(new Object()), i -> ScrollPosition.forward(keys), true);
+        return KeysetCursor.headers(window, order).getFirst(KeysetCursor.NEXT_CURSOR_HEADER);
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keysRoundTripWithTheTypesOfTheEntity() throws BadRequestCursor {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("createdOn", Instant.parse("2024-01-01T10:00:00.123Z"));
+        keys.put("id", "cm1");
+        String cursor = encode(keys, "-createdOn");
+
+        KeysetScrollPosition position = (KeysetScrollPosition) KeysetCursor.decode(cursor, "-createdOn", Comment.class);
+        assertEquals(keys, position.getKeys());
+        assertTrue(position.scrollsForward());
+
+        KeysetScrollPosition users = (KeysetScrollPosition) KeysetCursor.decode(encode(Map.of("id", 42L), null), null, User.class);
+        assertEquals(Map.of("id", 42L), users.getKeys());
+    }
+
+    // A row without a value of the order attribute still has a cursor, see Filters.after for the rows that follow it
+    @Test
+    void nullKeysRoundTrip() throws BadRequestCursor {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("createdOn", null);
+        keys.put("id", "cm1");
+        String cursor = encode(keys, "createdOn");
+
+        KeysetScrollPosition position = (KeysetScrollPosition) KeysetCursor.decode(cursor, "createdOn", Comment.class);
+        assertEquals(keys, position.getKeys());
+    }
+
+    @Test
+    void emptyCursorStartsAtTheFirstRow() throws BadRequestCursor {
+        assertTrue(KeysetCursor.decode("", null, Comment.class).isInitial());
+    }
+
+    @Test
+    void noCursorAfterTheLastRows() {
+        Window<Object> window = Window.from(List.of(new Object()), i -> ScrollPosition.forward(Map.of("id", "cm1")), false);
+        assertNull(KeysetCursor.headers(window, null).getFirst(KeysetCursor.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void rejectsCursorsOfAnotherOrder() {
+        String cursor = encode(Map.of("createdOn", Instant.parse("2024-01-01T10:00:00Z"), "id", "cm1"), "createdOn");
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(cursor, "-createdOn", Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(cursor, null, Comment.class));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode("not a cursor!", null, Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(encode("not json"), null, Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(encode("{\"order\":null,\"keys\":{}}"), null, Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(encode("{\"order\":null,\"keys\":{\"secret\":1}}"), null, Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(encode("{\"order\":null,\"keys\":{\"createdOn\":\"yesterday\"}}"), null, Comment.class));
+        assertThrows(BadRequestCursor.class, () -> KeysetCursor.decode(encode("{\"order\":null,\"keys\":{\"id\":\"one\"}}"), null, User.class));
+    }
+
+    @Test
+    void rejectionsAreBadRequests() {
+        assertEquals(HttpStatus.BAD_REQUEST, BadRequestCursor.class.getAnnotation(ResponseStatus.class).code());
+    }
+
+    @Test
+    void idIsAlwaysTheLastSortKey() {
+        assertEquals(Sort.by("id"), KeysetCursor.sort(null));
+        assertEquals(Sort.by(Sort.Order.desc("createdOn"), Sort.Order.asc("id")), KeysetCursor.sort("-createdOn"));
+        assertEquals(Sort.by(Sort.Order.desc("id")), KeysetCursor.sort("-id"));
+    }
+}